@@ -0,0 +1,116 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.Event;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic calendars that look like a real working day. Events start on the quarter
+ * hour during working hours and last between 15 minutes and 2 hours. The same seed always
+ * generates the same calendar, so benchmark runs can be compared with each other.
+ */
+public final class CalendarGenerator {
+  private static final int WORKDAY_START = TimeRange.getTimeInMinutes(8, 0);
+  private static final int WORKDAY_END = TimeRange.getTimeInMinutes(18, 0);
+  private static final int SLOT = 15;
+  private static final int MAX_EVENT_SLOTS = 8;
+
+  private final Random random;
+  private final List<String> attendees = new ArrayList<>();
+  private final int numEvents;
+  private final double overlapDensity;
+
+  /**
+   * @param seed The seed for every random choice the generator makes.
+   * @param numAttendees How many people have calendars.
+   * @param numEvents How many events to generate in total.
+   * @param overlapDensity The chance, from 0 to 1, that an event invites one more person. Higher
+   *     densities give larger meetings, so calendars overlap more.
+   */
+  public CalendarGenerator(long seed, int numAttendees, int numEvents, double overlapDensity) {
+    if (numAttendees <= 0) {
+      throw new IllegalArgumentException("numAttendees must be positive");
+    }
+
+    if (overlapDensity < 0 || overlapDensity >= 1) {
+      throw new IllegalArgumentException("overlapDensity must be in [0, 1)");
+    }
+
+    this.random = new Random(seed);
+    this.numEvents = numEvents;
+    this.overlapDensity = overlapDensity;
+    for (int i = 0; i < numAttendees; i++) {
+      attendees.add("Person " + i);
+    }
+  }
+
+  /**
+   * Returns the names of everyone with a calendar.
+   */
+  public List<String> getAttendees() {
+    return Collections.unmodifiableList(attendees);
+  }
+
+  /**
+   * Generates the events of the calendar.
+   */
+  public List<Event> events() {
+    List<Event> events = new ArrayList<>(numEvents);
+    int slotsPerDay = (WORKDAY_END - WORKDAY_START) / SLOT;
+    for (int i = 0; i < numEvents; i++) {
+      int slots = 1 + random.nextInt(MAX_EVENT_SLOTS);
+      int start = WORKDAY_START + SLOT * random.nextInt(slotsPerDay - slots + 1);
+      TimeRange when = TimeRange.fromStartDuration(start, slots * SLOT);
+
+      List<String> invited = new ArrayList<>();
+      invited.add(randomAttendee());
+      while (invited.size() < attendees.size() && random.nextDouble() < overlapDensity) {
+        invited.add(randomAttendee());
+      }
+
+      events.add(new Event("Event " + i, when, invited));
+    }
+    return events;
+  }
+
+  /**
+   * Generates a request for a meeting with {@code mandatory} required attendees and {@code optional}
+   * optional attendees, all different people.
+   */
+  public MeetingRequest request(int mandatory, int optional, long duration) {
+    if (mandatory + optional > attendees.size()) {
+      throw new IllegalArgumentException("Not enough attendees for the request");
+    }
+
+    List<String> shuffled = new ArrayList<>(attendees);
+    Collections.shuffle(shuffled, random);
+
+    MeetingRequest request = new MeetingRequest(shuffled.subList(0, mandatory), duration);
+    for (String attendee : shuffled.subList(mandatory, mandatory + optional)) {
+      request.addOptionalAttendee(attendee);
+    }
+    return request;
+  }
+
+  private String randomAttendee() {
+    return attendees.get(random.nextInt(attendees.size()));
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.AttendeeCalendarIndex;
+import com.google.sps.Event;
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code FindMeetingQuery.query} on a generated calendar. Throughput and sampled latency
+ * (with percentiles) are both reported. The defaults keep the exhaustive search affordable; pass
+ * e.g. {@code -p optional=200 -p mode=SWEEP} to measure large requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindMeetingQueryBenchmark {
+  @Param({"42"})
+  private long seed;
+
+  @Param({"200"})
+  private int attendees;
+
+  @Param({"2000"})
+  private int events;
+
+  @Param({"0.3"})
+  private double overlapDensity;
+
+  @Param({"3"})
+  private int mandatory;
+
+  @Param({"8"})
+  private int optional;
+
+  @Param({"30"})
+  private int duration;
+
+  @Param({"EXHAUSTIVE", "SWEEP", "BITSET", "PARALLEL"})
+  private FindMeetingQuery.Mode mode;
+
+  private List<Event> calendar;
+  private AttendeeCalendarIndex index;
+  private MeetingRequest request;
+  private FindMeetingQuery query;
+
+  @Setup
+  public void setUp() {
+    CalendarGenerator generator = new CalendarGenerator(seed, attendees, events, overlapDensity);
+    calendar = generator.events();
+    index = AttendeeCalendarIndex.of(calendar);
+    request = generator.request(mandatory, optional, duration);
+    query = new FindMeetingQuery();
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryIndex() {
+    return query.query(index, request, mode);
+  }
+
+  @Benchmark
+  public Collection<TimeRange> queryEvents() {
+    // Includes building the index from the events.
+    return query.query(calendar, request, mode);
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.AttendeeCalendarIndex;
+import com.google.sps.TimeRangeList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the intersect path the scheduler uses to combine attendees: the free times of every
+ * attendee in a group are intersected one after another.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntersectBenchmark {
+  @Param({"200"})
+  private int attendees;
+
+  @Param({"2000"})
+  private int events;
+
+  @Param({"0.3"})
+  private double overlapDensity;
+
+  @Param({"10", "100"})
+  private int groupSize;
+
+  private final TimeRangeList wholeDay = TimeRangeList.wholeDay();
+  private final TimeRangeList scratch = new TimeRangeList();
+  private TimeRangeList[] freeTimes;
+
+  @Setup
+  public void setUp() {
+    CalendarGenerator generator = new CalendarGenerator(42, attendees, events, overlapDensity);
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(generator.events());
+
+    List<String> people = generator.getAttendees();
+    freeTimes = new TimeRangeList[groupSize];
+    for (int i = 0; i < groupSize; i++) {
+      freeTimes[i] = TimeRangeList.of(index.getBusyTimes(people.get(i)));
+      freeTimes[i].complement();
+    }
+  }
+
+  @Benchmark
+  public int intersectGroup() {
+    scratch.copyFrom(wholeDay);
+    for (TimeRangeList attendeeFreeTimes : freeTimes) {
+      scratch.intersect(attendeeFreeTimes);
+    }
+    return scratch.size();
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.TimeRange;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code TimeRange.overlaps} over a fixed set of random ranges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeRangeBenchmark {
+  private static final int RANGES = 1024;
+
+  private final TimeRange[] ranges = new TimeRange[RANGES];
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    for (int i = 0; i < RANGES; i++) {
+      int start = random.nextInt(TimeRange.END_OF_DAY);
+      int duration = random.nextInt(TimeRange.WHOLE_DAY.end() - start);
+      ranges[i] = TimeRange.fromStartDuration(start, duration);
+    }
+  }
+
+  @Benchmark
+  public int overlaps() {
+    // Compare each range with its neighbour so every call sees different inputs.
+    int overlapping = 0;
+    for (int i = 0; i < RANGES; i++) {
+      if (ranges[i].overlaps(ranges[(i + 1) % RANGES])) {
+        overlapping++;
+      }
+    }
+    return overlapping;
+  }
+}
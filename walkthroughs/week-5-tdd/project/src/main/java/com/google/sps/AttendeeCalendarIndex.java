@@ -0,0 +1,499 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An inverted index from each attendee to the times they are busy. The busy times of an attendee
+ * are sorted by start and overlapping events are merged, so queries can use them directly. Build
+ * the index once for a set of events and reuse it across queries. Indexes are read-only.
+ *
+ * <p>Events may fall on any day, with times counted in minutes from a shared epoch. Because each
+ * attendee's busy times are sorted and never overlap, the ones inside a query's horizon are found
+ * with a binary search instead of a scan over the attendee's whole history.
+ *
+ * <p>An index opened from a {@code MappedCalendar} reads each attendee's busy times from the mapped
+ * file the first time they are needed.
+ *
+ * <p>Recurring events are kept as their rules. A query expands them only over its horizon and
+ * merges the occurrences with the attendee's other busy times there, so a series that runs for
+ * years costs a query no more than the occurrences it can see.
+ *
+ * <p>A group is a name that stands for several attendees, such as a team. Its busy times are the
+ * union of its members', merged once when the group is defined and again only when one of its
+ * members gets new events, so a request naming a group reads one list however big the group is.
+ */
+public final class AttendeeCalendarIndex {
+  private static final TimeRangeList NO_BUSY_TIMES = new TimeRangeList(0);
+  private static final TimeRangeList FREE_ALL_DAY = NO_BUSY_TIMES.gaps(
+      TimeRange.WHOLE_DAY.start(), TimeRange.WHOLE_DAY.end());
+  private static final AtomicLong NEXT_VERSION = new AtomicLong();
+  private static final RecurringEvent[][] NO_RECURRING_EVENTS = new RecurringEvent[0][];
+  private static final int[][] NO_GROUPS = new int[0][];
+
+  // Indexed by {@code AttendeeDictionary} ID. Null for attendees without events. The lists are
+  // never modified once the index is built.
+  private final TimeRangeList[] busyTimes;
+  // Busy times of the attendees missing from {@code busyTimes}, read from a file. May be null.
+  private final MappedCalendar.BusyTimes mappedBusyTimes;
+  // Indexed by {@code AttendeeDictionary} ID. Null for attendees without recurring events.
+  private final RecurringEvent[][] recurringEvents;
+  // Indexed by {@code AttendeeDictionary} ID. The sorted IDs of a group's members, or null for
+  // attendees that are not groups.
+  private final int[][] groupMembers;
+  // Indexed by {@code AttendeeDictionary} ID. The groups each attendee is a member of, or null.
+  private final int[][] memberGroups;
+  // The complements of the busy times, filled in the first time each attendee is queried.
+  private final AtomicReferenceArray<TimeRangeList> freeTimes;
+  private final long version = NEXT_VERSION.incrementAndGet();
+
+  private AttendeeCalendarIndex(TimeRangeList[] busyTimes, MappedCalendar.BusyTimes mapped,
+      RecurringEvent[][] recurringEvents, int[][] groupMembers) {
+    this.busyTimes = busyTimes;
+    this.mappedBusyTimes = mapped;
+    this.recurringEvents = recurringEvents;
+    this.groupMembers = groupMembers;
+    this.memberGroups = invert(groupMembers);
+    int size = Math.max(busyTimes.length, recurringEvents.length);
+    this.freeTimes =
+        new AtomicReferenceArray<>(mapped == null ? size : Math.max(size, mapped.size()));
+  }
+
+  /**
+   * Creates an index whose busy times are all read from a mapped file.
+   */
+  static AttendeeCalendarIndex mapped(MappedCalendar.BusyTimes busyTimes) {
+    return new AttendeeCalendarIndex(
+        new TimeRangeList[0], busyTimes, NO_RECURRING_EVENTS, NO_GROUPS);
+  }
+
+  /**
+   * Creates an index of the given events.
+   *
+   * @param events The events to index. Must be non-null.
+   */
+  public static AttendeeCalendarIndex of(Collection<Event> events) {
+    return of(events, Collections.emptyList());
+  }
+
+  /**
+   * Creates an index of the given events and recurring events. The recurring events are not
+   * expanded until they are queried.
+   *
+   * @param events The events to index. Must be non-null.
+   * @param recurringEvents The recurring events to index. Must be non-null.
+   */
+  public static AttendeeCalendarIndex of(
+      Collection<Event> events, Collection<RecurringEvent> recurringEvents) {
+    if (events == null) {
+      throw new IllegalArgumentException("events cannot be null. Use empty collection instead.");
+    }
+    if (recurringEvents == null) {
+      throw new IllegalArgumentException(
+          "recurringEvents cannot be null. Use empty collection instead.");
+    }
+    long startNanos = System.nanoTime();
+
+    // Only as big as the highest ID in the events, however many names the dictionary holds.
+    @SuppressWarnings("unchecked")
+    List<TimeRange>[] eventTimes = new List[maxAttendeeId(events) + 1];
+    for (Event event : events) {
+      for (int id : event.getAttendeeIds()) {
+        addEventTime(eventTimes, id, event.getWhen());
+      }
+    }
+
+    TimeRangeList[] busyTimes = new TimeRangeList[eventTimes.length];
+    for (int id = 0; id < eventTimes.length; id++) {
+      if (eventTimes[id] != null) {
+        busyTimes[id] = merge(eventTimes[id]);
+      }
+    }
+
+    QueryStats.global().recordPhase(QueryStats.Phase.INDEX_BUILD, startNanos);
+    return new AttendeeCalendarIndex(
+        busyTimes, null, groupByAttendee(recurringEvents), NO_GROUPS);
+  }
+
+  /**
+   * Creates an index of the given events.
+   */
+  public static AttendeeCalendarIndex of(Event... events) {
+    return of(Arrays.asList(events));
+  }
+
+  /**
+   * Returns an index of the events in this index plus {@code events}, which is left unchanged. Only
+   * the attendees of the new events, and the groups they are in, have their busy times merged
+   * again. Everyone else shares their busy times, and any free times already computed, with this
+   * index.
+   *
+   * @param events The events to add. Must be non-null.
+   */
+  public AttendeeCalendarIndex withEvents(Collection<Event> events) {
+    if (events == null) {
+      throw new IllegalArgumentException("events cannot be null. Use empty collection instead.");
+    }
+    long startNanos = System.nanoTime();
+
+    // Groups are interned before their members' events can reach them, so they fit as well.
+    @SuppressWarnings("unchecked")
+    List<TimeRange>[] eventTimes =
+        new List[Math.max(maxAttendeeId(events) + 1, groupMembers.length)];
+    for (Event event : events) {
+      for (int id : event.getAttendeeIds()) {
+        addEventTime(eventTimes, id, event.getWhen());
+        if (id < memberGroups.length && memberGroups[id] != null) {
+          for (int group : memberGroups[id]) {
+            addEventTime(eventTimes, group, event.getWhen());
+          }
+        }
+      }
+    }
+
+    TimeRangeList[] newBusyTimes =
+        Arrays.copyOf(busyTimes, Math.max(busyTimes.length, eventTimes.length));
+    for (int id = 0; id < eventTimes.length; id++) {
+      if (eventTimes[id] != null) {
+        TimeRangeList busy = getBusyRanges(id);
+        if (busy != NO_BUSY_TIMES) {
+          eventTimes[id].addAll(busy.toTimeRanges());
+        }
+        newBusyTimes[id] = merge(eventTimes[id]);
+      }
+    }
+
+    AttendeeCalendarIndex index =
+        new AttendeeCalendarIndex(newBusyTimes, mappedBusyTimes, recurringEvents, groupMembers);
+    for (int id = 0; id < freeTimes.length(); id++) {
+      if (id >= eventTimes.length || eventTimes[id] == null) {
+        index.freeTimes.set(id, freeTimes.get(id));
+      }
+    }
+    QueryStats.global().recordPhase(QueryStats.Phase.INDEX_BUILD, startNanos);
+    return index;
+  }
+
+  /**
+   * Returns an index with {@code name} standing for {@code members}, replacing any group of that
+   * name. This index is left unchanged. The group's busy times are the union of its members' busy
+   * times and recurring events, so a request that names it waits for all of them. Events should
+   * list the members rather than the group.
+   *
+   * @param name The name of the group. Must be non-null and not one of its own members.
+   * @param members The members of the group. Must be non-null, and none may be groups themselves.
+   */
+  public AttendeeCalendarIndex withGroup(String name, Collection<String> members) {
+    if (name == null) {
+      throw new IllegalArgumentException("name cannot be null");
+    }
+    if (members == null) {
+      throw new IllegalArgumentException("members cannot be null. Use empty collection instead.");
+    }
+    long startNanos = System.nanoTime();
+
+    int group = AttendeeDictionary.global().intern(name);
+    int[] memberIds = AttendeeSet.of(members).ids();
+    List<TimeRange> ranges = new ArrayList<>();
+    Set<RecurringEvent> recurring = new LinkedHashSet<>();
+    for (int member : memberIds) {
+      if (member == group) {
+        throw new IllegalArgumentException(name + " cannot be a member of itself");
+      }
+      if (isGroup(member)) {
+        throw new IllegalArgumentException(
+            AttendeeDictionary.global().name(member) + " is a group and cannot be a member");
+      }
+      ranges.addAll(getBusyRanges(member).toTimeRanges());
+      RecurringEvent[] series = getRecurringEvents(member);
+      if (series != null) {
+        recurring.addAll(Arrays.asList(series));
+      }
+    }
+
+    int size = Math.max(Math.max(busyTimes.length, recurringEvents.length), group + 1);
+    TimeRangeList[] newBusyTimes = Arrays.copyOf(busyTimes, size);
+    newBusyTimes[group] = ranges.isEmpty() ? null : merge(ranges);
+    RecurringEvent[][] newRecurringEvents = Arrays.copyOf(recurringEvents, size);
+    newRecurringEvents[group] =
+        recurring.isEmpty() ? null : recurring.toArray(new RecurringEvent[0]);
+    int[][] newGroupMembers = Arrays.copyOf(groupMembers, Math.max(groupMembers.length, group + 1));
+    newGroupMembers[group] = memberIds;
+
+    AttendeeCalendarIndex index = new AttendeeCalendarIndex(
+        newBusyTimes, mappedBusyTimes, newRecurringEvents, newGroupMembers);
+    for (int id = 0; id < freeTimes.length(); id++) {
+      if (id != group) {
+        index.freeTimes.set(id, freeTimes.get(id));
+      }
+    }
+    QueryStats.global().recordPhase(QueryStats.Phase.INDEX_BUILD, startNanos);
+    return index;
+  }
+
+  /**
+   * Returns an index with every group of {@code other} defined again over the events of this one.
+   */
+  AttendeeCalendarIndex withGroupsOf(AttendeeCalendarIndex other) {
+    AttendeeCalendarIndex index = this;
+    for (int group = 0; group < other.groupMembers.length; group++) {
+      if (other.groupMembers[group] != null) {
+        index = index.withGroup(AttendeeDictionary.global().name(group),
+            AttendeeSet.ofIds(other.groupMembers[group], other.groupMembers[group].length));
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns true if {@code name} is a group in this index.
+   */
+  public boolean isGroup(String name) {
+    return isGroup(AttendeeDictionary.global().lookup(name));
+  }
+
+  private boolean isGroup(int id) {
+    return id >= 0 && id < groupMembers.length && groupMembers[id] != null;
+  }
+
+  /**
+   * Returns the version of this index. Every index gets a higher version than the ones built
+   * before it, so results computed from an older index can be recognized as stale.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns a read-only list of the times {@code attendee} is busy, sorted by start time. No two
+   * ranges in the list overlap. Attendees without any events have an empty list. Recurring events
+   * are left out, since a series may never end; see {@code getBusyTimes(String, TimeRange)}.
+   */
+  public List<TimeRange> getBusyTimes(String attendee) {
+    int id = AttendeeDictionary.global().lookup(attendee);
+    return Collections.unmodifiableList(getBusyRanges(id).toTimeRanges());
+  }
+
+  /**
+   * Returns the same as {@code getBusyTimes(String)}, limited to the ranges that overlap
+   * {@code window} and including the occurrences of recurring events there.
+   */
+  public List<TimeRange> getBusyTimes(String attendee, TimeRange window) {
+    int id = AttendeeDictionary.global().lookup(attendee);
+    TimeRangeList busy = getBusyRanges(id, window);
+    List<TimeRange> ranges = new ArrayList<>();
+    for (int i = busy.firstEndingAfter(window.start());
+        i < busy.size() && busy.start(i) < window.end();
+        i++) {
+      ranges.add(TimeRange.fromStartEnd(busy.start(i), busy.end(i), false));
+    }
+    return Collections.unmodifiableList(ranges);
+  }
+
+  /**
+   * Returns the same ranges as {@code getBusyTimes} for the attendee with the given
+   * {@code AttendeeDictionary} ID, without creating a {@code TimeRange} for each. The list is
+   * shared by every query, so it must not be modified.
+   */
+  TimeRangeList getBusyRanges(int id) {
+    if (id >= 0 && id < busyTimes.length && busyTimes[id] != null) {
+      return busyTimes[id];
+    }
+    if (mappedBusyTimes != null) {
+      TimeRangeList busy = mappedBusyTimes.get(id);
+      if (busy != null) {
+        return busy;
+      }
+    }
+    return NO_BUSY_TIMES;
+  }
+
+  /**
+   * Returns the busy times of the attendee with the given {@code AttendeeDictionary} ID, including
+   * the occurrences of their recurring events that overlap {@code window}. Without recurring events
+   * this is the list from {@code getBusyRanges(int)}. Otherwise it only has the ranges that overlap
+   * the window, merged the same way. Either way the list must not be modified.
+   */
+  TimeRangeList getBusyRanges(int id, TimeRange window) {
+    TimeRangeList busy = getBusyRanges(id);
+    RecurringEvent[] recurring = getRecurringEvents(id);
+    if (recurring == null) {
+      return busy;
+    }
+
+    List<TimeRange> ranges = new ArrayList<>();
+    for (int i = busy.firstEndingAfter(window.start());
+        i < busy.size() && busy.start(i) < window.end();
+        i++) {
+      ranges.add(TimeRange.fromStartEnd(busy.start(i), busy.end(i), false));
+    }
+    for (RecurringEvent series : recurring) {
+      series.addOccurrences(window.start(), window.end(), ranges);
+    }
+    return ranges.isEmpty() ? NO_BUSY_TIMES : merge(ranges);
+  }
+
+  /**
+   * Returns the free times of the attendee with the given {@code AttendeeDictionary} ID over the
+   * whole day. They are only computed once per attendee, so every query against this index shares
+   * them. The list must not be modified.
+   */
+  TimeRangeList getFreeRanges(int id) {
+    if (getBusyRanges(id) == NO_BUSY_TIMES && getRecurringEvents(id) == null) {
+      return FREE_ALL_DAY;
+    }
+
+    TimeRangeList free = freeTimes.get(id);
+    if (free == null) {
+      // Two threads may both compute the list, but they get the same answer.
+      free = getBusyRanges(id, TimeRange.WHOLE_DAY)
+          .gaps(TimeRange.WHOLE_DAY.start(), TimeRange.WHOLE_DAY.end());
+      freeTimes.set(id, free);
+    }
+    return free;
+  }
+
+  /**
+   * Returns the free times of the attendee with the given {@code AttendeeDictionary} ID within
+   * {@code window}. Only the busy times that overlap the window are looked at, so the cost is
+   * logarithmic in the attendee's history plus linear in the number of ranges returned. The list
+   * may be shared when {@code window} is the whole day, so it must not be modified.
+   */
+  TimeRangeList getFreeRanges(int id, TimeRange window) {
+    if (window.equals(TimeRange.WHOLE_DAY)) {
+      return getFreeRanges(id);
+    }
+    return getBusyRanges(id, window).gaps(window.start(), window.end());
+  }
+
+  /**
+   * Returns true if {@code attendee} has at least one event or recurring event in this index.
+   */
+  public boolean contains(String attendee) {
+    int id = AttendeeDictionary.global().lookup(attendee);
+    return getBusyRanges(id) != NO_BUSY_TIMES || getRecurringEvents(id) != null;
+  }
+
+  private static int maxAttendeeId(Collection<Event> events) {
+    int max = -1;
+    for (Event event : events) {
+      int[] ids = event.getAttendeeIds();
+      if (ids.length > 0) {
+        // The IDs are sorted.
+        max = Math.max(max, ids[ids.length - 1]);
+      }
+    }
+    return max;
+  }
+
+  private static void addEventTime(List<TimeRange>[] eventTimes, int id, TimeRange when) {
+    if (eventTimes[id] == null) {
+      eventTimes[id] = new ArrayList<>();
+    }
+    eventTimes[id].add(when);
+  }
+
+  // Lists the groups each attendee is a member of.
+  private static int[][] invert(int[][] groupMembers) {
+    if (groupMembers.length == 0) {
+      return NO_GROUPS;
+    }
+
+    int size = 0;
+    for (int[] members : groupMembers) {
+      if (members != null && members.length > 0) {
+        size = Math.max(size, members[members.length - 1] + 1);
+      }
+    }
+    int[][] memberGroups = new int[size][];
+    for (int group = 0; group < groupMembers.length; group++) {
+      if (groupMembers[group] == null) {
+        continue;
+      }
+      for (int member : groupMembers[group]) {
+        int[] existing = memberGroups[member];
+        if (existing == null) {
+          memberGroups[member] = new int[] {group};
+        } else {
+          memberGroups[member] = Arrays.copyOf(existing, existing.length + 1);
+          memberGroups[member][existing.length] = group;
+        }
+      }
+    }
+    return memberGroups;
+  }
+
+  private RecurringEvent[] getRecurringEvents(int id) {
+    return id >= 0 && id < recurringEvents.length ? recurringEvents[id] : null;
+  }
+
+  private static RecurringEvent[][] groupByAttendee(Collection<RecurringEvent> recurringEvents) {
+    if (recurringEvents.isEmpty()) {
+      return NO_RECURRING_EVENTS;
+    }
+
+    int size = 0;
+    for (RecurringEvent series : recurringEvents) {
+      int[] ids = series.getAttendeeIds();
+      if (ids.length > 0) {
+        size = Math.max(size, ids[ids.length - 1] + 1);
+      }
+    }
+    RecurringEvent[][] grouped = new RecurringEvent[size][];
+    for (RecurringEvent series : recurringEvents) {
+      for (int id : series.getAttendeeIds()) {
+        RecurringEvent[] existing = grouped[id];
+        if (existing == null) {
+          grouped[id] = new RecurringEvent[] {series};
+        } else {
+          grouped[id] = Arrays.copyOf(existing, existing.length + 1);
+          grouped[id][existing.length] = series;
+        }
+      }
+    }
+    return grouped;
+  }
+
+  // Sort the ranges and merge any overlapping ranges into a single large range
+  private static TimeRangeList merge(List<TimeRange> ranges) {
+    // Sort by end as well so that ranges sharing a start are all kept and merged.
+    ranges.sort(TimeRange.ORDER_BY_START.thenComparing(TimeRange.ORDER_BY_END));
+
+    TimeRangeList merged = new TimeRangeList();
+    TimeRange prev = ranges.get(0);
+    for (TimeRange range : ranges.subList(1, ranges.size())) {
+      if (prev.overlaps(range)) {
+        int start = Math.min(prev.start(), range.start());
+        int end = Math.max(prev.end(), range.end());
+        prev = TimeRange.fromStartEnd(start, end, false);
+      } else {
+        merged.add(prev.start(), prev.end());
+        prev = range;
+      }
+    }
+    merged.add(prev.start(), prev.end());
+
+    return merged;
+  }
+}
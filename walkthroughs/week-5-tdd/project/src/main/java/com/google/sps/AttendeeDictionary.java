@@ -0,0 +1,108 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps attendee names to small, dense int IDs. Each distinct name is stored once and every event
+ * and request refers to it by ID, so the scheduler compares ints instead of hashing strings. IDs
+ * are handed out in the order names are first seen and are never reused. Safe to use from many
+ * threads.
+ *
+ * <p>Names are never removed, so a dictionary holds at most a fixed number of them. Events come in
+ * from public endpoints, and without a limit every new name they bring would stay for good.
+ */
+public final class AttendeeDictionary {
+  // Far more people than any one calendar server keeps track of.
+  private static final int MAX_SIZE = 1 << 20;
+  private static final AttendeeDictionary GLOBAL = new AttendeeDictionary(MAX_SIZE);
+
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private final int maxSize;
+
+  // Written only while holding the lock. A name is stored here before its ID is published in
+  // {@code ids}, so anyone who has an ID can read its name.
+  private volatile String[] names = new String[64];
+  private int size = 0;
+
+  AttendeeDictionary(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the dictionary shared by every {@code Event} and {@code MeetingRequest}.
+   */
+  public static AttendeeDictionary global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Returns the ID of {@code name}, giving it the next free ID if it has not been seen before.
+   *
+   * @throws IllegalArgumentException if {@code name} is new and the dictionary is full.
+   */
+  public int intern(String name) {
+    if (name == null) {
+      throw new IllegalArgumentException("name cannot be null");
+    }
+
+    Integer id = ids.get(name);
+    if (id != null) {
+      return id;
+    }
+
+    synchronized (this) {
+      id = ids.get(name);
+      if (id != null) {
+        return id;
+      }
+
+      if (size == maxSize) {
+        throw new IllegalArgumentException("Cannot add more than " + maxSize + " attendees");
+      }
+      if (size == names.length) {
+        names = Arrays.copyOf(names, size * 2);
+      }
+      names[size] = name;
+      ids.put(name, size);
+      return size++;
+    }
+  }
+
+  /**
+   * Returns the ID of {@code name}, or -1 if it has never been interned.
+   */
+  public int lookup(Object name) {
+    Integer id = ids.get(name);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the name with the given ID.
+   */
+  public String name(int id) {
+    return names[id];
+  }
+
+  /**
+   * Returns how many names have been interned. Every ID is less than this.
+   */
+  public int size() {
+    return ids.size();
+  }
+}
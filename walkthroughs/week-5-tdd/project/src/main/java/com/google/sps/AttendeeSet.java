@@ -0,0 +1,143 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only set of attendee names, stored as a sorted array of IDs from the global
+ * {@code AttendeeDictionary}. It takes a few bytes per attendee instead of a hash table entry, and
+ * checking whether two sets share an attendee compares ints.
+ */
+public final class AttendeeSet extends AbstractSet<String> {
+  private static final AttendeeSet EMPTY = new AttendeeSet(new int[0]);
+
+  private final int[] ids;
+
+  private AttendeeSet(int[] ids) {
+    this.ids = ids;
+  }
+
+  /**
+   * Creates a set of the given names. Duplicates are ignored.
+   */
+  public static AttendeeSet of(Collection<String> names) {
+    if (names instanceof AttendeeSet) {
+      return (AttendeeSet) names;
+    }
+
+    if (names.isEmpty()) {
+      return EMPTY;
+    }
+
+    int[] ids = new int[names.size()];
+    int count = 0;
+    for (String name : names) {
+      ids[count++] = AttendeeDictionary.global().intern(name);
+    }
+    return new AttendeeSet(sortedUnique(ids, count));
+  }
+
+  /**
+   * Creates a set of the first {@code count} IDs in {@code ids}. The array is not kept.
+   */
+  static AttendeeSet ofIds(int[] ids, int count) {
+    return count == 0 ? EMPTY : new AttendeeSet(sortedUnique(Arrays.copyOf(ids, count), count));
+  }
+
+  /**
+   * Returns a set with everyone in this set plus {@code name}.
+   */
+  public AttendeeSet with(String name) {
+    int id = AttendeeDictionary.global().intern(name);
+    int position = Arrays.binarySearch(ids, id);
+    if (position >= 0) {
+      return this;
+    }
+
+    int insertAt = -position - 1;
+    int[] newIds = new int[ids.length + 1];
+    System.arraycopy(ids, 0, newIds, 0, insertAt);
+    newIds[insertAt] = id;
+    System.arraycopy(ids, insertAt, newIds, insertAt + 1, ids.length - insertAt);
+    return new AttendeeSet(newIds);
+  }
+
+  /**
+   * Returns the sorted IDs of the attendees. The array is shared, so it must not be modified.
+   */
+  int[] ids() {
+    return ids;
+  }
+
+  @Override
+  public int size() {
+    return ids.length;
+  }
+
+  @Override
+  public boolean contains(Object name) {
+    int id = AttendeeDictionary.global().lookup(name);
+    return id >= 0 && Arrays.binarySearch(ids, id) >= 0;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < ids.length;
+      }
+
+      @Override
+      public String next() {
+        if (next == ids.length) {
+          throw new NoSuchElementException();
+        }
+        return AttendeeDictionary.global().name(ids[next++]);
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other instanceof AttendeeSet) {
+      return Arrays.equals(ids, ((AttendeeSet) other).ids);
+    }
+    return super.equals(other);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  private static int[] sortedUnique(int[] ids, int count) {
+    Arrays.sort(ids, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || ids[unique - 1] != ids[i]) {
+        ids[unique++] = ids[i];
+      }
+    }
+    return unique == ids.length ? ids : Arrays.copyOf(ids, unique);
+  }
+}
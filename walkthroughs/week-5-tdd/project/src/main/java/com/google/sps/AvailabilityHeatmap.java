@@ -0,0 +1,96 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+/**
+ * How many of the mandatory and of the optional attendees of a request are free at each minute of
+ * the day. Each busy range adds -1 at its start and +1 at its end of a difference array, and a
+ * prefix sum turns that into counts, so building a heatmap is one pass over the busy times plus one
+ * pass over the day. Heatmaps are read-only.
+ */
+public final class AvailabilityHeatmap {
+  private static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+
+  private final int numMandatory;
+  private final int[] mandatoryFree;
+  private final int numOptional;
+  private final int[] optionalFree;
+
+  private AvailabilityHeatmap(
+      int numMandatory, int[] mandatoryFree, int numOptional, int[] optionalFree) {
+    this.numMandatory = numMandatory;
+    this.mandatoryFree = mandatoryFree;
+    this.numOptional = numOptional;
+    this.optionalFree = optionalFree;
+  }
+
+  /**
+   * Creates the heatmap of the attendees in {@code request}, using the busy times in {@code index}.
+   */
+  public static AvailabilityHeatmap of(AttendeeCalendarIndex index, MeetingRequest request) {
+    request = request.resolve();
+    int numMandatory = request.getAttendees().size();
+    int numOptional = request.getOptionalAttendees().size();
+    return new AvailabilityHeatmap(
+        numMandatory, countFree(index, request.getAttendeeIds(), numMandatory),
+        numOptional, countFree(index, request.getOptionalAttendeeIds(), numOptional));
+  }
+
+  public int getNumMandatory() {
+    return numMandatory;
+  }
+
+  public int getNumOptional() {
+    return numOptional;
+  }
+
+  /**
+   * Returns how many mandatory attendees are free during {@code minute}.
+   */
+  public int getMandatoryFree(int minute) {
+    return mandatoryFree[minute];
+  }
+
+  /**
+   * Returns how many optional attendees are free during {@code minute}.
+   */
+  public int getOptionalFree(int minute) {
+    return optionalFree[minute];
+  }
+
+  // Counts {@code numAttendees} in all. The ones missing from {@code attendees} have never been in
+  // an event, so they are free all day.
+  private static int[] countFree(AttendeeCalendarIndex index, int[] attendees, int numAttendees) {
+    int[] change = new int[MINUTES_PER_DAY + 1];
+    for (int attendee : attendees) {
+      // The index has merged each attendee's busy times, so no minute is counted twice.
+      TimeRangeList busyTimes = index.getBusyRanges(attendee, TimeRange.WHOLE_DAY);
+      for (int i = busyTimes.firstEndingAfter(0);
+          i < busyTimes.size() && busyTimes.start(i) < MINUTES_PER_DAY;
+          i++) {
+        change[Math.max(busyTimes.start(i), 0)]--;
+        change[Math.min(busyTimes.end(i), MINUTES_PER_DAY)]++;
+      }
+    }
+
+    int[] free = new int[MINUTES_PER_DAY];
+    int count = numAttendees;
+    for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+      count += change[minute];
+      free[minute] = count;
+    }
+    return free;
+  }
+}
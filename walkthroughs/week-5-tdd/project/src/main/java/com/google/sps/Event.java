@@ -15,8 +15,6 @@
 package com.google.sps;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -26,7 +24,8 @@ import java.util.Set;
 public final class Event {
   private final String title;
   private final TimeRange when;
-  private final Set<String> attendees = new HashSet<>();
+  // Stored as interned IDs. Still serializes to JSON as a list of names.
+  private final AttendeeSet attendees;
 
   /**
    * Creates a new event.
@@ -50,7 +49,7 @@ public final class Event {
 
     this.title = title;
     this.when = when;
-    this.attendees.addAll(attendees);
+    this.attendees = AttendeeSet.of(attendees);
   }
 
   /**
@@ -71,9 +70,16 @@ public final class Event {
    * Returns a read-only set of required attendees for this event.
    */
   public Set<String> getAttendees() {
-    // Return the attendees as an unmodifiable set so that the caller can't change our
-    // internal data.
-    return Collections.unmodifiableSet(attendees);
+    // The set is read-only, so it can be shared with the caller without copying.
+    return attendees;
+  }
+
+  /**
+   * Returns the sorted {@code AttendeeDictionary} IDs of the attendees. The array is shared, so it
+   * must not be modified.
+   */
+  int[] getAttendeeIds() {
+    return attendees.ids();
   }
 
   @Override
@@ -0,0 +1,145 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads events from newline-delimited JSON, one {@code Event} object per line in the same form
+ * {@code /get-events} returns them, and adds them to an {@code EventStore}. Records are parsed one
+ * at a time from a streaming {@code JsonReader} and added in batches, so only one batch is held in
+ * memory no matter how large the input is, and each batch publishes one snapshot.
+ */
+public final class EventIngester {
+  private static final int DEFAULT_BATCH_SIZE = 10_000;
+
+  private final EventStore store;
+  private final int batchSize;
+
+  public EventIngester(EventStore store) {
+    this(store, DEFAULT_BATCH_SIZE);
+  }
+
+  public EventIngester(EventStore store, int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize must be positive");
+    }
+    this.store = store;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Adds every event in {@code input} to the store. If a record is malformed, or brings a new
+   * attendee name when the {@code AttendeeDictionary} is full, the batches before it have already
+   * been added and an {@code IllegalArgumentException} says which record failed.
+   */
+  public Result ingest(Reader input) throws IOException {
+    long startNanos = System.nanoTime();
+    JsonReader reader = new JsonReader(input);
+    // Lenient readers accept a stream of top-level values, which is what NDJSON is.
+    reader.setLenient(true);
+
+    List<Event> batch = new ArrayList<>(batchSize);
+    long count = 0;
+    long batches = 0;
+    while (hasNext(reader, count + 1)) {
+      batch.add(readEvent(reader, count + 1));
+      count++;
+      if (batch.size() == batchSize) {
+        store.addAll(batch);
+        batches++;
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      store.addAll(batch);
+      batches++;
+    }
+
+    return new Result(count, batches, System.nanoTime() - startNanos);
+  }
+
+  private static boolean hasNext(JsonReader reader, long recordNumber) throws IOException {
+    try {
+      return reader.peek() != JsonToken.END_DOCUMENT;
+    } catch (EOFException e) {
+      // An input without any records ends before the reader has seen a value.
+      return false;
+    } catch (MalformedJsonException e) {
+      throw new IllegalArgumentException("record " + recordNumber + ": " + e.getMessage(), e);
+    }
+  }
+
+  private Event readEvent(JsonReader reader, long recordNumber) {
+    try {
+      // The adapter builds the event through its constructor, which checks it.
+      Event event = JsonAdapters.gson().fromJson(reader, Event.class);
+      if (event == null) {
+        throw new IllegalArgumentException("record cannot be null");
+      }
+      return event;
+    } catch (JsonParseException | IllegalArgumentException e) {
+      throw new IllegalArgumentException("record " + recordNumber + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * What one call to {@code ingest} did and how fast.
+   */
+  public static final class Result {
+    private final long events;
+    private final long batches;
+    private final long nanos;
+
+    Result(long events, long batches, long nanos) {
+      this.events = events;
+      this.batches = batches;
+      this.nanos = nanos;
+    }
+
+    public long getEvents() {
+      return events;
+    }
+
+    /**
+     * Returns how many snapshots were published, one per batch.
+     */
+    public long getBatches() {
+      return batches;
+    }
+
+    public long getMillis() {
+      return nanos / 1_000_000;
+    }
+
+    public double getEventsPerSecond() {
+      return nanos == 0 ? 0 : events * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Ingested %d events in %d batches in %d ms (%.0f events/s)", events,
+          batches, getMillis(), getEventsPerSecond());
+    }
+  }
+}
@@ -0,0 +1,409 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A calendar of events that can change while it is being queried. Every write publishes a new
+ * read-only {@code Snapshot} of the events and their {@code AttendeeCalendarIndex} through an
+ * atomic reference, so readers never lock and always see either all of a write or none of it.
+ *
+ * <p>Writes are batched. A writer queues its change and then takes turns publishing: whoever
+ * publishes applies every change queued so far, so a burst of writes from many threads builds a
+ * handful of snapshots rather than one per write. Each write returns once its change is visible.
+ *
+ * <p>A batch that only adds events appends them to a log every snapshot shares and updates the
+ * previous index in place of rebuilding it, so only the attendees of the new events, and their
+ * groups, are merged again. Its cost depends on the size of the batch, not of the store. Removals
+ * and updates copy the log and rebuild the whole index, groups included.
+ */
+public final class EventStore {
+  // The log holds appended events in chunks of this many.
+  private static final int CHUNK_BITS = 10;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  private final AtomicReference<Snapshot> snapshot;
+  private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+  private final Object publishLock = new Object();
+  // Only touched while holding {@code publishLock}. Event IDs are positions in the log.
+  private EventLog log;
+  private long snapshotCount = 1;
+
+  public EventStore() {
+    this(Collections.emptyList());
+  }
+
+  /**
+   * Creates a store holding {@code events}.
+   */
+  public EventStore(Collection<Event> events) {
+    log = new EventLog(Collections.emptyList());
+    for (Event event : events) {
+      log.add(event);
+    }
+    EventView initial = log.view(log.size());
+    this.snapshot =
+        new AtomicReference<>(new Snapshot(initial, AttendeeCalendarIndex.of(initial)));
+  }
+
+  /**
+   * Creates a store holding {@code events}, already indexed by {@code index}. Event IDs are their
+   * positions in the list. The list is only copied on the first update or removal, so it may
+   * decode its events as they are read.
+   */
+  EventStore(List<Event> events, AttendeeCalendarIndex index) {
+    log = new EventLog(events);
+    this.snapshot = new AtomicReference<>(new Snapshot(log.view(log.size()), index));
+  }
+
+  /**
+   * Returns the current snapshot. It never changes, so a query can use it from start to finish.
+   */
+  public Snapshot snapshot() {
+    return snapshot.get();
+  }
+
+  /**
+   * Returns how many snapshots have been published, including the first one.
+   */
+  public long getSnapshotCount() {
+    synchronized (publishLock) {
+      return snapshotCount;
+    }
+  }
+
+  /**
+   * Adds an event and returns its ID.
+   */
+  public long add(Event event) {
+    return addAll(Collections.singletonList(event)).get(0);
+  }
+
+  /**
+   * Adds every event in {@code events} in one snapshot and returns their IDs, in order.
+   */
+  public List<Long> addAll(Collection<Event> events) {
+    Change change = new Change();
+    for (Event event : events) {
+      if (event == null) {
+        throw new IllegalArgumentException("events cannot contain null");
+      }
+      change.puts.add(event);
+    }
+    submit(change);
+    return change.ids;
+  }
+
+  /**
+   * Removes the event with the given ID. Returns false if there is no such event.
+   */
+  public boolean remove(long id) {
+    Change change = new Change();
+    change.removes.add(id);
+    submit(change);
+    return change.found;
+  }
+
+  /**
+   * Replaces the event with the given ID. Returns false if there is no such event, in which case
+   * nothing is added.
+   */
+  public boolean update(long id, Event event) {
+    if (event == null) {
+      throw new IllegalArgumentException("event cannot be null");
+    }
+    Change change = new Change();
+    change.updates.put(id, event);
+    submit(change);
+    return change.found;
+  }
+
+  /**
+   * Defines a group of attendees that requests can name in place of its members, replacing any
+   * group of the same name. See {@code AttendeeCalendarIndex.withGroup}.
+   */
+  public void putGroup(String name, Collection<String> members) {
+    if (name == null || members == null) {
+      throw new IllegalArgumentException("name and members cannot be null");
+    }
+    Change change = new Change();
+    change.groups.put(name, AttendeeSet.of(members));
+    submit(change);
+    if (change.error != null) {
+      throw change.error;
+    }
+  }
+
+  // Queues the change and waits until a snapshot with it has been published.
+  private void submit(Change change) {
+    pending.add(change);
+    synchronized (publishLock) {
+      if (change.published) {
+        // Whoever held the lock before us already published it.
+        return;
+      }
+
+      Snapshot previous = snapshot.get();
+      List<Change> batch = new ArrayList<>();
+      boolean addsOnly = true;
+      Change next;
+      while ((next = pending.poll()) != null) {
+        batch.add(next);
+        addsOnly &= next.updates.isEmpty() && next.removes.isEmpty();
+      }
+
+      if (!addsOnly) {
+        // Older snapshots still read the slots that are about to change.
+        log = EventLog.copyOf(previous.events);
+      }
+      int size = previous.events.size();
+      List<Event> added = new ArrayList<>();
+      for (Change applied : batch) {
+        size += applied.applyTo(log);
+        applied.published = true;
+        added.addAll(applied.puts);
+      }
+      EventView events = log.view(size);
+
+      AttendeeCalendarIndex index = addsOnly
+          ? previous.index.withEvents(added)
+          : AttendeeCalendarIndex.of(events).withGroupsOf(previous.index);
+      for (Change applied : batch) {
+        for (Map.Entry<String, AttendeeSet> group : applied.groups.entrySet()) {
+          try {
+            index = index.withGroup(group.getKey(), group.getValue());
+          } catch (IllegalArgumentException e) {
+            // Only this change fails. The rest of the batch is still published.
+            applied.error = e;
+          }
+        }
+      }
+      snapshot.set(new Snapshot(events, index));
+      snapshotCount++;
+    }
+  }
+
+  /**
+   * The events in the store at one point in time, along with their index. Snapshots are read-only.
+   */
+  public static final class Snapshot {
+    private final EventView events;
+    private final AttendeeCalendarIndex index;
+
+    private Snapshot(EventView events, AttendeeCalendarIndex index) {
+      this.events = events;
+      this.index = index;
+    }
+
+    /**
+     * Returns a version that is larger for every newer snapshot. It is the version of the index.
+     */
+    public long getVersion() {
+      return index.getVersion();
+    }
+
+    /**
+     * Returns a read-only view of the events, in the order they were added.
+     */
+    public Collection<Event> getEvents() {
+      return events;
+    }
+
+    /**
+     * Returns the event with the given ID, or null if there is none.
+     */
+    public Event getEvent(long id) {
+      return events.get(id);
+    }
+
+    public AttendeeCalendarIndex getIndex() {
+      return index;
+    }
+  }
+
+  /**
+   * The events of the store by ID, shared by every snapshot. Adding events only appends to it, and
+   * a slot never changes once a snapshot can see it: updates and removals copy the log first,
+   * leaving null behind as the tombstone of each removed event.
+   */
+  private static final class EventLog {
+    // The events with the lowest IDs. It may decode them as they are read.
+    private final List<Event> base;
+    // The events after the base, CHUNK_SIZE to a chunk. The array of chunks is replaced when it
+    // grows, so each snapshot keeps the one it was published with.
+    private Event[][] chunks = new Event[1][];
+    private int size;
+
+    EventLog(List<Event> base) {
+      this.base = base;
+      this.size = base.size();
+    }
+
+    // Copies the events {@code view} can see, tombstones included, so their IDs stay the same.
+    static EventLog copyOf(EventView view) {
+      EventLog copy = new EventLog(Collections.emptyList());
+      for (int id = 0; id < view.limit; id++) {
+        copy.add(view.get(id));
+      }
+      return copy;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void add(Event event) {
+      int position = size - base.size();
+      int chunk = position >>> CHUNK_BITS;
+      if (chunk == chunks.length) {
+        chunks = Arrays.copyOf(chunks, chunks.length * 2);
+      }
+      if (chunks[chunk] == null) {
+        chunks[chunk] = new Event[CHUNK_SIZE];
+      }
+      chunks[chunk][position & (CHUNK_SIZE - 1)] = event;
+      size++;
+    }
+
+    Event get(long id) {
+      if (id < 0 || id >= size) {
+        return null;
+      }
+      return id < base.size() ? base.get((int) id) : slot(chunks, (int) id - base.size());
+    }
+
+    // Only for slots no snapshot can see yet, which is every slot of a fresh copy.
+    void set(long id, Event event) {
+      int position = (int) id - base.size();
+      chunks[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)] = event;
+    }
+
+    // Returns the events up to now, of which {@code numEvents} are not tombstones.
+    EventView view(int numEvents) {
+      return new EventView(base, chunks, size, numEvents);
+    }
+  }
+
+  private static Event slot(Event[][] chunks, int position) {
+    return chunks[position >>> CHUNK_BITS][position & (CHUNK_SIZE - 1)];
+  }
+
+  // The events of an {@code EventLog} below {@code limit}, skipping tombstones, in ID order.
+  private static final class EventView extends AbstractCollection<Event> {
+    private final List<Event> base;
+    private final Event[][] chunks;
+    private final int limit;
+    private final int numEvents;
+
+    EventView(List<Event> base, Event[][] chunks, int limit, int numEvents) {
+      this.base = base;
+      this.chunks = chunks;
+      this.limit = limit;
+      this.numEvents = numEvents;
+    }
+
+    Event get(long id) {
+      if (id < 0 || id >= limit) {
+        return null;
+      }
+      return id < base.size() ? base.get((int) id) : slot(chunks, (int) id - base.size());
+    }
+
+    @Override
+    public Iterator<Event> iterator() {
+      return new Iterator<Event>() {
+        private int next = skipTombstones(0);
+
+        @Override
+        public boolean hasNext() {
+          return next < limit;
+        }
+
+        @Override
+        public Event next() {
+          if (next >= limit) {
+            throw new NoSuchElementException();
+          }
+          Event event = get(next);
+          next = skipTombstones(next + 1);
+          return event;
+        }
+      };
+    }
+
+    private int skipTombstones(int id) {
+      while (id < limit && get(id) == null) {
+        id++;
+      }
+      return id;
+    }
+
+    @Override
+    public int size() {
+      return numEvents;
+    }
+  }
+
+  // One write. Its fields are only read and written while holding {@code publishLock}, except for
+  // the ones filled in before the change is queued.
+  private static final class Change {
+    private final List<Event> puts = new ArrayList<>();
+    private final Map<Long, Event> updates = new LinkedHashMap<>();
+    private final List<Long> removes = new ArrayList<>();
+    private final Map<String, AttendeeSet> groups = new LinkedHashMap<>();
+    // The IDs given to {@code puts}, in order.
+    private final List<Long> ids = new ArrayList<>();
+    private boolean found;
+    private IllegalArgumentException error;
+    private boolean published;
+
+    // Returns how many events the change adds, less how many it removes. Updates and removals
+    // must only be applied to a log no snapshot has seen.
+    int applyTo(EventLog log) {
+      for (Event event : puts) {
+        ids.add((long) log.size());
+        log.add(event);
+      }
+      for (Map.Entry<Long, Event> update : updates.entrySet()) {
+        found = log.get(update.getKey()) != null;
+        if (found) {
+          log.set(update.getKey(), update.getValue());
+        }
+      }
+      int removed = 0;
+      for (long id : removes) {
+        found = log.get(id) != null;
+        if (found) {
+          log.set(id, null);
+          removed++;
+        }
+      }
+      return puts.size() - removed;
+    }
+  }
+}
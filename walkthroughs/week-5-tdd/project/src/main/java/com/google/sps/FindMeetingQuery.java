@@ -15,243 +15,842 @@
 package com.google.sps;
 
 import java.lang.Math;
-import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 
 public final class FindMeetingQuery {
+  // Each thread of a batch gets about this many chunks of requests, to even out uneven chunks.
+  private static final int BATCH_CHUNKS_PER_THREAD = 4;
+  // Requests with at least this many attendees merge their busy times instead of intersecting
+  // their free times one attendee at a time.
+  static final int HEAP_MERGE_THRESHOLD = 16;
+
+  /**
+   * The strategy used to decide which optional attendees to include. Every mode returns the same
+   * answer: the most optional attendees that can make it, then the most time slots.
+   */
+  public enum Mode {
+    // Tries every subset of optional attendees. Exponential in the number of optional attendees.
+    EXHAUSTIVE,
+    // Sweeps over the sorted busy boundaries of the optional attendees. Polynomial time.
+    SWEEP,
+    // Like SWEEP, but works on one bit per minute of the day instead of on lists of ranges. Only
+    // covers a single day, so queries over any other horizon use SWEEP instead.
+    BITSET,
+    // Searches the subsets of optional attendees on every core, pruning hopeless branches.
+    PARALLEL,
+    // Like PARALLEL, but starts from a greedy answer and stops at the request's deadline, if it
+    // has one. The answer may then not be the best one, which the {@code Solution} reports.
+    ANYTIME
+  }
+
+  // Runs the PARALLEL and ANYTIME searches and the chunks of a batch.
+  private final ForkJoinPool pool;
+
+  public FindMeetingQuery() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param pool The pool the PARALLEL and ANYTIME searches and {@code queryAll} run on, so a server
+   *     can bound how many cores they take. It is shared, never shut down.
+   */
+  public FindMeetingQuery(ForkJoinPool pool) {
+    this.pool = pool;
+  }
 
   public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
-    Solution sol = queryOptimalSolution(events, request);
+    return query(AttendeeCalendarIndex.of(events), request);
+  }
+
+  public Collection<TimeRange> query(
+      Collection<Event> events, MeetingRequest request, Mode mode) {
+    return query(AttendeeCalendarIndex.of(events), request, mode);
+  }
+
+  /**
+   * Finds the meeting times using an index built ahead of time. The cost of the query depends on
+   * the attendees in the request rather than on the number of events in the index.
+   */
+  public Collection<TimeRange> query(AttendeeCalendarIndex index, MeetingRequest request) {
+    return query(index, request, Mode.SWEEP);
+  }
+
+  public Collection<TimeRange> query(
+      AttendeeCalendarIndex index, MeetingRequest request, Mode mode) {
+    return query(index, request, TimeRange.WHOLE_DAY, mode);
+  }
+
+  /**
+   * Finds the meeting times within {@code horizon}, which may span many days when the events are
+   * given in minutes from a shared epoch. For example, the slots in the next two weeks are found
+   * with a horizon of {@code TimeRange.fromStartDuration(now, 14 * 24 * 60)}. Only the busy times
+   * inside the horizon are looked at, so the cost does not grow with the length of the attendees'
+   * history. Querying a single day is the special case where the horizon is
+   * {@code TimeRange.WHOLE_DAY}.
+   */
+  public Collection<TimeRange> query(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon) {
+    return query(index, request, horizon, Mode.SWEEP);
+  }
+
+  public Collection<TimeRange> query(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon, Mode mode) {
+    return querySolution(index, request, horizon, mode).solution();
+  }
+
+  /**
+   * Same as {@code query}, but returns the whole {@code Solution}, which also tells how many
+   * optional attendees can make it and whether the answer is proven to be the best one.
+   */
+  public Solution querySolution(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon, Mode mode) {
+    long startNanos = System.nanoTime();
+    try {
+      return solve(index, request, horizon, mode);
+    } finally {
+      QueryStats.global().recordPhase(QueryStats.Phase.SOLVE, startNanos);
+    }
+  }
+
+  private Solution solve(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon, Mode mode) {
+    request = request.resolve();
+    Solution sol;
+    switch (mode) {
+      case EXHAUSTIVE:
+        sol = queryOptimalSolution(index, request, horizon);
+        break;
+      case BITSET:
+        sol = horizon.equals(TimeRange.WHOLE_DAY)
+            ? queryBitsetSolution(index, request)
+            : querySweepSolution(index, request, horizon);
+        break;
+      case PARALLEL:
+        sol = queryParallelSolution(index, request, horizon);
+        break;
+      case ANYTIME:
+        sol = queryAnytimeSolution(index, request, horizon);
+        break;
+      default:
+        sol = querySweepSolution(index, request, horizon);
+        break;
+    }
+
+    // Optional attendees who have never been in an event are free whenever anyone else is, so
+    // they join every valid solution without changing which one is best.
+    List<String> alwaysFree = request.getUnknownOptionalAttendees();
+    if (!alwaysFree.isEmpty() && sol.isValid()) {
+      sol = sol.withAttendeesAlwaysFree(alwaysFree.size(), weightOf(request, alwaysFree));
+    }
 
     // special case- a meeting with only optional attendees, none of whom
     // can make it, should return an empty list
     if (request.optionalAttendeesOnly() && sol.numOptionalAttendees() == 0) {
-      return new ArrayList<TimeRange>();
+      Solution none = new Solution(0, new TimeRangeList());
+      none.setProvenOptimal(sol.isProvenOptimal());
+      return none;
     }
-    return sol.solution();
+    return sol;
   }
 
-  private Solution queryOptimalSolution(Collection<Event> events, MeetingRequest request) {
+  public Optional<TimeRange> findEarliest(
+      Collection<Event> events, MeetingRequest request, int fromMinute) {
+    return findEarliest(AttendeeCalendarIndex.of(events), request, fromMinute);
+  }
+
+  /**
+   * Finds the earliest time from {@code fromMinute} to the end of the day when every attendee is
+   * free for the whole meeting. See {@code findEarliest(AttendeeCalendarIndex, MeetingRequest,
+   * TimeRange)}.
+   */
+  public Optional<TimeRange> findEarliest(
+      AttendeeCalendarIndex index, MeetingRequest request, int fromMinute) {
+    return findEarliest(
+        index, request, TimeRange.fromStartEnd(fromMinute, TimeRange.WHOLE_DAY.end(), false));
+  }
+
+  /**
+   * Finds the first free range in {@code horizon} that is long enough for the meeting, which is
+   * the first range {@code query} would return for a request without optional attendees. Optional
+   * attendees are not considered, unless the request only has optional attendees, in which case
+   * they must all be free. The busy times are merged lazily and the walk stops at the first gap
+   * that fits, so only a short prefix of a dense calendar is read.
+   */
+  public Optional<TimeRange> findEarliest(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon) {
+    int[] attendees = request.getAttendees().isEmpty()
+        ? request.getOptionalAttendeeIds()
+        : request.getAttendeeIds();
+    // A zero length meeting still needs a minute that is free for everyone to be valid.
+    long duration = Math.max(request.getDuration(), 1);
+
+    MergedBusyTimes merged = new MergedBusyTimes(
+        getBusyTimes(index, horizon, attendees), horizon.start(), horizon.end());
+    int free = horizon.start();
+    while (merged.next()) {
+      if (merged.start() - free >= duration) {
+        return Optional.of(TimeRange.fromStartEnd(free, merged.start(), false));
+      }
+      free = Math.max(free, merged.end());
+    }
+
+    if (horizon.end() - free >= duration) {
+      return Optional.of(TimeRange.fromStartEnd(free, horizon.end(), false));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns up to {@code k} meeting times for the day, best first. See
+   * {@code queryTopK(AttendeeCalendarIndex, MeetingRequest, TimeRange, int, ToDoubleFunction)}.
+   */
+  public List<RankedSlot> queryTopK(AttendeeCalendarIndex index, MeetingRequest request, int k) {
+    return queryTopK(index, request, TimeRange.WHOLE_DAY, k, slot -> 0);
+  }
+
+  /**
+   * Returns up to {@code k} meeting times within {@code horizon} that work for every mandatory
+   * attendee, ordered by {@code RankedSlot.BEST_FIRST}: the most weight of optional attendees free
+   * for the whole slot, then the most of them, then the highest {@code preference}, then the
+   * earliest start. Each slot lasts exactly as long as the meeting.
+   *
+   * <p>A slot only gains optional attendees when it starts at the start of a mandatory slot or at
+   * the end of someone's busy time, so those starts are scored, in one sweep. From each of them,
+   * the same attendees are free until the next boundary, and the last start of that run is scored
+   * too when {@code preference} likes it better. That finds the best slots for any preference that
+   * only rises or only falls through the day; other preferences are only looked at on the ends of
+   * the runs. The best {@code k} are kept in a heap that never holds more than {@code k}, so the
+   * cost is O(n log k) for n candidate starts no matter how fragmented the calendar is.
+   */
+  public List<RankedSlot> queryTopK(AttendeeCalendarIndex index, MeetingRequest request,
+      TimeRange horizon, int k, ToDoubleFunction<TimeRange> preference) {
+    if (k <= 0) {
+      throw new IllegalArgumentException("k must be positive");
+    }
+    MeetingRequest resolved = request.resolve();
+
+    TimeRangeList timesMandatory =
+        querySpecificAttendees(index, resolved, horizon, resolved.getAttendeeIds());
+    int[] optionalAttendees = resolved.getOptionalAttendeeIds();
+    // A zero length meeting still needs a minute that is free for everyone to be valid.
+    int duration = (int) Math.max(resolved.getDuration(), 1);
+
+    List<int[]> boundaries = new ArrayList<>();
+    List<Integer> starts =
+        collectBoundaries(index, optionalAttendees, timesMandatory, duration, horizon, boundaries);
+
+    // The worst slot kept so far is at the head, ready to be replaced.
+    // k comes from the caller, so the heap is only sized for the starts there are.
+    PriorityQueue<RankedSlot> best = new PriorityQueue<>(
+        Math.max(Math.min(k, starts.size()), 1), RankedSlot.BEST_FIRST.reversed());
+    sweepBoundaries(boundaries, starts, resolved.getOptionalAttendeeWeights(),
+        (start, free, weight, blockedCount, nextChange) -> {
+          TimeRange when = TimeRange.fromStartDuration(start, (int) resolved.getDuration());
+          double firstPreference = preference.applyAsDouble(when);
+          offer(best, k, new RankedSlot(when, free, weight, firstPreference));
+
+          int slotEnd = timesMandatory.end(timesMandatory.firstEndingAfter(start));
+          int last = Math.min(nextChange - 1, slotEnd - duration);
+          if (last > start) {
+            TimeRange lastWhen = TimeRange.fromStartDuration(last, (int) resolved.getDuration());
+            double lastPreference = preference.applyAsDouble(lastWhen);
+            if (lastPreference > firstPreference) {
+              offer(best, k, new RankedSlot(lastWhen, free, weight, lastPreference));
+            }
+          }
+        });
+
+    // Only now look up who is free for each of the slots that made the cut. The optional attendees
+    // who have never been in an event are free for all of them.
+    List<String> alwaysFree = resolved.getUnknownOptionalAttendees();
+    double alwaysFreeWeight = weightOf(resolved, alwaysFree);
+    TimeRangeList[] optionalBusyTimes = getBusyTimes(index, horizon, optionalAttendees);
+    List<RankedSlot> ranked = new ArrayList<>(best.size());
+    for (RankedSlot slot : best) {
+      int start = slot.getWhen().start();
+      int[] free = new int[optionalAttendees.length];
+      int numFree = 0;
+      for (int i = 0; i < optionalAttendees.length; i++) {
+        TimeRangeList busyTimes = optionalBusyTimes[i];
+        int next = busyTimes.firstEndingAfter(start);
+        if (next == busyTimes.size() || busyTimes.start(next) >= start + duration) {
+          free[numFree++] = optionalAttendees[i];
+        }
+      }
+      Collection<String> names = AttendeeSet.ofIds(free, numFree);
+      if (!alwaysFree.isEmpty()) {
+        Set<String> allNames = new LinkedHashSet<>(names);
+        allNames.addAll(alwaysFree);
+        names = Collections.unmodifiableSet(allNames);
+      }
+      ranked.add(new RankedSlot(slot.getWhen(), names, slot.getOptionalWeight() + alwaysFreeWeight,
+          slot.getPreference()));
+    }
+    ranked.sort(RankedSlot.BEST_FIRST);
+    return ranked;
+  }
+
+  private static double weightOf(MeetingRequest request, List<String> optionalAttendees) {
+    double weight = 0.0;
+    for (String attendee : optionalAttendees) {
+      weight += request.getOptionalAttendeeWeight(attendee);
+    }
+    return weight;
+  }
+
+  // Keeps {@code slot} if it is among the best {@code k} seen so far.
+  private static void offer(PriorityQueue<RankedSlot> best, int k, RankedSlot slot) {
+    if (best.size() < k) {
+      best.add(slot);
+    } else if (RankedSlot.BEST_FIRST.compare(slot, best.peek()) < 0) {
+      best.poll();
+      best.add(slot);
+    }
+  }
+
+  /**
+   * Answers every request in {@code requests} against one index built from {@code events}.
+   */
+  public List<Collection<TimeRange>> queryAll(
+      Collection<Event> events, Collection<MeetingRequest> requests) {
+    return queryAll(AttendeeCalendarIndex.of(events), requests);
+  }
+
+  /**
+   * Answers every request in {@code requests} against {@code index}, in chunks on the pool this
+   * query was created with, so it uses no more threads than the pool has. The free times of each
+   * attendee are computed once and shared by every request. The answers are returned in the same
+   * order as the requests.
+   */
+  public List<Collection<TimeRange>> queryAll(
+      AttendeeCalendarIndex index, Collection<MeetingRequest> requests) {
+    List<MeetingRequest> requestList = new ArrayList<>(requests);
+    int numThreads = Math.min(pool.getParallelism(), (requestList.size() + 1) / 2);
+    if (numThreads <= 1) {
+      List<Collection<TimeRange>> answers = new ArrayList<>(requestList.size());
+      for (MeetingRequest request : requestList) {
+        answers.add(query(index, request));
+      }
+      return answers;
+    }
+
+    // Hand out the requests in chunks, so each task is worth the cost of scheduling it.
+    int chunkSize = Math.max(1, requestList.size() / (numThreads * BATCH_CHUNKS_PER_THREAD));
+    List<Callable<List<Collection<TimeRange>>>> tasks = new ArrayList<>();
+    for (int start = 0; start < requestList.size(); start += chunkSize) {
+      List<MeetingRequest> chunk =
+          requestList.subList(start, Math.min(start + chunkSize, requestList.size()));
+      tasks.add(() -> {
+        List<Collection<TimeRange>> answers = new ArrayList<>(chunk.size());
+        for (MeetingRequest request : chunk) {
+          answers.add(query(index, request));
+        }
+        return answers;
+      });
+    }
+
+    List<Future<List<Collection<TimeRange>>>> chunkFutures = new ArrayList<>(tasks.size());
+    try {
+      for (Callable<List<Collection<TimeRange>>> task : tasks) {
+        chunkFutures.add(pool.submit(task));
+      }
+      List<Collection<TimeRange>> answers = new ArrayList<>(requestList.size());
+      for (Future<List<Collection<TimeRange>>> chunkAnswers : chunkFutures) {
+        answers.addAll(chunkAnswers.get());
+      }
+      return answers;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while answering a batch of requests", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      // The pool is shared, so only drop the chunks of this batch that have not run yet.
+      for (Future<List<Collection<TimeRange>>> chunkAnswers : chunkFutures) {
+        chunkAnswers.cancel(false);
+      }
+    }
+  }
+
+  private Solution queryOptimalSolution(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon) {
     // Precompute mandatory times to avoid recalculating it many times
-    Collection<TimeRange> timesMandatory =
-        querySpecificAttendees(events, request, request.getAttendees());
+    TimeRangeList timesMandatory =
+        querySpecificAttendees(index, request, horizon, request.getAttendeeIds());
+    int[] optionalAttendees = request.getOptionalAttendeeIds();
 
     return queryOptimalSolution(
-        events,
+        index,
         timesMandatory,
-        new ArrayList<String>(request.getOptionalAttendees()),
+        optionalAttendees,
+        request.getOptionalAttendeeWeights(),
         request,
-        new ArrayList<String>(),
+        horizon,
+        new int[optionalAttendees.length],
+        0,
+        0.0,
         0);
   }
 
   // Use recursive backtracking to generate all combinations and track the best current solution
   private Solution queryOptimalSolution(
-      Collection<Event> events,
-      Collection<TimeRange> timesMandatory,
-      List<String> optionalAttendees,
+      AttendeeCalendarIndex index,
+      TimeRangeList timesMandatory,
+      int[] optionalAttendees,
+      double[] weights,
       MeetingRequest request,
-      List<String> attendeeAccumulator,
+      TimeRange horizon,
+      int[] attendeeAccumulator,
+      int numAccumulated,
+      double weightAccumulated,
       int indexAccumulator) {
 
     Solution bestSol = new Solution(0, timesMandatory);
-    for (int i = indexAccumulator; i < optionalAttendees.size(); i++) {
-      attendeeAccumulator.add(optionalAttendees.get(i));
-
-      Collection<TimeRange> timesOptional =
-          querySpecificAttendees(events, request, attendeeAccumulator);
-      Collection<TimeRange> timesBoth =
-          enforceCriteria(intersect(timesMandatory, timesOptional), request);
-
-      Solution sol = new Solution(attendeeAccumulator.size(), timesBoth);
-      Solution branchSol = queryOptimalSolution(
-          events, timesMandatory, optionalAttendees, request, attendeeAccumulator, i + 1);
+    for (int i = indexAccumulator; i < optionalAttendees.length; i++) {
+      attendeeAccumulator[numAccumulated] = optionalAttendees[i];
+
+      TimeRangeList timesBoth = querySpecificAttendees(
+          index, request, horizon, Arrays.copyOf(attendeeAccumulator, numAccumulated + 1));
+      timesBoth.intersect(timesMandatory);
+      timesBoth.removeShorterThan(request.getDuration());
+      QueryStats.global().increment(QueryStats.Counter.SUBSETS_EXPLORED);
+
+      double weight = weightAccumulated + weights[i];
+      Solution sol = new Solution(numAccumulated + 1, weight, timesBoth);
+      Solution branchSol = queryOptimalSolution(index, timesMandatory, optionalAttendees, weights,
+          request, horizon, attendeeAccumulator, numAccumulated + 1, weight, i + 1);
       bestSol = Solution.betterSolution(bestSol, Solution.betterSolution(sol, branchSol));
-
-      attendeeAccumulator.remove(attendeeAccumulator.size() - 1);
     }
 
     return bestSol;
   }
 
-  // Solve the query using the given attendees, not the attendees in the request
-  private Collection<TimeRange> querySpecificAttendees(
-      Collection<Event> events, MeetingRequest request, Collection<String> attendees) {
+  // Runs the exhaustive search as a parallel branch-and-bound search.
+  private Solution queryParallelSolution(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon) {
+    TimeRangeList timesMandatory =
+        querySpecificAttendees(index, request, horizon, request.getAttendeeIds());
+    TimeRangeList[] optionalFreeTimes =
+        getAttendeesFreeTimes(index, horizon, request.getOptionalAttendeeIds());
+
+    return new OptionalAttendeeSearch(timesMandatory, optionalFreeTimes,
+        request.getOptionalAttendeeWeights(), request.getDuration())
+        .search(pool);
+  }
 
-    List<Collection<TimeRange>> attendeesFreeTimes =
-        new ArrayList<>(getAttendeesFreeTimes(events, attendees).values());
+  // Runs the parallel search until the request's deadline, starting from a greedy solution.
+  private Solution queryAnytimeSolution(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon) {
+    long deadlineNanos = request.getDeadlineMillis() > 0
+        ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(request.getDeadlineMillis())
+        : Long.MAX_VALUE;
+    TimeRangeList timesMandatory =
+        querySpecificAttendees(index, request, horizon, request.getAttendeeIds());
+    TimeRangeList[] optionalFreeTimes =
+        getAttendeesFreeTimes(index, horizon, request.getOptionalAttendeeIds());
+
+    return new OptionalAttendeeSearch(timesMandatory, optionalFreeTimes,
+        request.getOptionalAttendeeWeights(), request.getDuration(), deadlineNanos)
+        .search(pool);
+  }
 
-    /**
-      If there are no participants, the whole day will be returned
-      If there are any participants, the intersection of the whole day and
-      the participants schedule will be the participants schedule.
-    */
-    attendeesFreeTimes.add(Arrays.asList(TimeRange.WHOLE_DAY));
+  /**
+   * Finds the same solution as the exhaustive search without enumerating subsets. A meeting of
+   * length d starting at t works for an optional attendee exactly when t is outside every
+   * [busyStart - d + 1, busyEnd) window of theirs, so the set of attendees who can make it only
+   * grows at the start of a mandatory slot or at the end of a busy window. Sweeping those
+   * boundaries finds the heaviest feasible set, and only the distinct heaviest sets need their
+   * slots computed. Weights cannot be negative, so the heaviest subset is always everyone who is
+   * free at one of those starts.
+   */
+  private Solution querySweepSolution(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon) {
+    TimeRangeList timesMandatory =
+        querySpecificAttendees(index, request, horizon, request.getAttendeeIds());
+    int[] optionalAttendees = request.getOptionalAttendeeIds();
+    double[] weights = request.getOptionalAttendeeWeights();
+
+    Solution mandatoryOnly = new Solution(0, timesMandatory);
+    if (timesMandatory.isEmpty() || optionalAttendees.length == 0) {
+      return mandatoryOnly;
+    }
 
-    return getAvailableTimes(attendeesFreeTimes, request);
-  }
+    // A zero length meeting still needs a minute that is free for everyone to be valid.
+    int duration = (int) Math.max(request.getDuration(), 1);
+
+    // Each entry is {time, attendee index, +1 when a blocked window opens / -1 when it closes}.
+    List<int[]> boundaries = new ArrayList<>();
+    List<Integer> feasibleStarts =
+        collectBoundaries(index, optionalAttendees, timesMandatory, duration, horizon, boundaries);
+
+    // The best start has the most weight, then the most attendees.
+    double[] most = new double[2];
+    sweepBoundaries(boundaries, feasibleStarts, weights,
+        (start, free, weight, blockedCount, nextChange) -> {
+          if (weight > most[0] || (weight == most[0] && free > most[1])) {
+            most[0] = weight;
+            most[1] = free;
+          }
+        });
+    double mostWeight = most[0];
+    int mostAttendees = (int) most[1];
+    if (mostAttendees == 0) {
+      return mandatoryOnly;
+    }
 
-  private Collection<TimeRange> getAvailableTimes(
-      Collection<Collection<TimeRange>> attendeesFreeTimes, MeetingRequest request) {
+    // Collect the attendees free at every start with the best weight and number of attendees.
+    Collection<BitSet> bestGroups = new HashSet<>();
+    sweepBoundaries(boundaries, feasibleStarts, weights,
+        (start, free, weight, blockedCount, nextChange) -> {
+          if (weight == mostWeight && free == mostAttendees) {
+            BitSet group = new BitSet(blockedCount.length);
+            for (int i = 0; i < blockedCount.length; i++) {
+              if (blockedCount[i] == 0) {
+                group.set(i);
+              }
+            }
+            bestGroups.add(group);
+          }
+        });
+
+    TimeRangeList[] optionalFreeTimes = getAttendeesFreeTimes(index, horizon, optionalAttendees);
+
+    Solution bestSol = mandatoryOnly;
+    BitSet bestGroup = null;
+    for (BitSet group : bestGroups) {
+      TimeRangeList groupFreeTimes = timesMandatory.copy();
+      for (int i = group.nextSetBit(0); i >= 0; i = group.nextSetBit(i + 1)) {
+        groupFreeTimes.intersect(optionalFreeTimes[i]);
+      }
+      groupFreeTimes.removeShorterThan(request.getDuration());
+      Solution sol = new Solution(mostAttendees, mostWeight, groupFreeTimes);
+
+      // Break ties the way the exhaustive search would: it keeps the first subset it visits.
+      if (bestGroup == null
+          || sol.numTimeRanges() > bestSol.numTimeRanges()
+          || (sol.numTimeRanges() == bestSol.numTimeRanges()
+              && visitedFirst(group, bestGroup))) {
+        bestSol = sol;
+        bestGroup = group;
+      }
+    }
 
-    return enforceCriteria(collapse(attendeesFreeTimes), request);
+    return bestSol;
   }
 
-  private Collection<TimeRange> enforceCriteria(
-      Collection<TimeRange> possibleTimes, MeetingRequest request) {
+  /**
+   * Finds the same solution as the sweep, using a {@code MinuteBitmask} per attendee. Intersecting
+   * attendees is a word-wise AND, and the minutes where a meeting could start are found by
+   * shifting each mask against itself.
+   */
+  private Solution queryBitsetSolution(AttendeeCalendarIndex index, MeetingRequest request) {
+    MinuteBitmask mandatoryFree = MinuteBitmask.wholeDay();
+    for (int attendee : request.getAttendeeIds()) {
+      mandatoryFree.and(
+          MinuteBitmask.freeTimes(index.getBusyRanges(attendee, TimeRange.WHOLE_DAY)));
+    }
+    int[] optionalAttendees = request.getOptionalAttendeeIds();
+    double[] weights = request.getOptionalAttendeeWeights();
 
-    Collection<TimeRange> options = new ArrayList<TimeRange>();
+    Solution mandatoryOnly = new Solution(0, mandatoryFree.ranges(request.getDuration()));
+    if (!mandatoryOnly.isValid() || optionalAttendees.length == 0) {
+      return mandatoryOnly;
+    }
 
-    for (TimeRange timeRange : possibleTimes) {
-      if (timeRange.duration() >= request.getDuration()) {
-        options.add(timeRange);
-      }
+    // A zero length meeting still needs a minute that is free for everyone to be valid.
+    int duration = (int) Math.max(request.getDuration(), 1);
+    MinuteBitmask mandatoryStarts = mandatoryFree.copy();
+    mandatoryStarts.keepWindowStarts(duration);
+
+    // Count how many optional attendees could make a meeting starting at each minute, and how much
+    // they weigh.
+    MinuteBitmask[] optionalFree = new MinuteBitmask[optionalAttendees.length];
+    MinuteBitmask[] optionalStarts = new MinuteBitmask[optionalAttendees.length];
+    int[] counts = new int[TimeRange.WHOLE_DAY.duration()];
+    double[] sums = new double[TimeRange.WHOLE_DAY.duration()];
+    for (int i = 0; i < optionalAttendees.length; i++) {
+      optionalFree[i] = MinuteBitmask.freeTimes(
+          index.getBusyRanges(optionalAttendees[i], TimeRange.WHOLE_DAY));
+      optionalStarts[i] = optionalFree[i].copy();
+      optionalStarts[i].keepWindowStarts(duration);
+      optionalStarts[i].and(mandatoryStarts);
+      optionalStarts[i].addTo(counts);
+      optionalStarts[i].addTo(sums, weights[i]);
     }
 
-    return options;
-  }
+    double mostWeight = 0.0;
+    int mostAttendees = 0;
+    for (int minute = 0; minute < counts.length; minute++) {
+      if (sums[minute] > mostWeight
+          || (sums[minute] == mostWeight && counts[minute] > mostAttendees)) {
+        mostWeight = sums[minute];
+        mostAttendees = counts[minute];
+      }
+    }
+    if (mostAttendees == 0) {
+      return mandatoryOnly;
+    }
 
-  // Collapse multiple sets of timeranges into one collection representing the total intersection
-  private Collection<TimeRange> collapse(Collection<Collection<TimeRange>> timeRangesCollection) {
-    if (timeRangesCollection.size() == 0) {
-      return new TreeSet<TimeRange>(TimeRange.ORDER_BY_START);
+    Collection<BitSet> bestGroups = new HashSet<>();
+    for (int minute = 0; minute < counts.length; minute++) {
+      if (sums[minute] == mostWeight && counts[minute] == mostAttendees) {
+        BitSet group = new BitSet(optionalAttendees.length);
+        for (int i = 0; i < optionalAttendees.length; i++) {
+          if (optionalStarts[i].get(minute)) {
+            group.set(i);
+          }
+        }
+        bestGroups.add(group);
+      }
     }
 
-    Iterator<Collection<TimeRange>> it = timeRangesCollection.iterator();
-    Collection<TimeRange> collapsed = it.next();
-    for (Collection<TimeRange> timeRanges : timeRangesCollection) {
-      collapsed = intersect(collapsed, timeRanges);
+    Solution bestSol = mandatoryOnly;
+    BitSet bestGroup = null;
+    for (BitSet group : bestGroups) {
+      MinuteBitmask groupFree = mandatoryFree.copy();
+      for (int i = group.nextSetBit(0); i >= 0; i = group.nextSetBit(i + 1)) {
+        groupFree.and(optionalFree[i]);
+      }
+      Solution sol =
+          new Solution(mostAttendees, mostWeight, groupFree.ranges(request.getDuration()));
+
+      if (bestGroup == null
+          || sol.numTimeRanges() > bestSol.numTimeRanges()
+          || (sol.numTimeRanges() == bestSol.numTimeRanges()
+              && visitedFirst(group, bestGroup))) {
+        bestSol = sol;
+        bestGroup = group;
+      }
     }
 
-    return collapsed;
+    return bestSol;
   }
 
-  // THe order really doesn't matter because intersection is commutative
-  private Collection<TimeRange> intersect(Collection<TimeRange> one, Collection<TimeRange> two) {
-    Collection<TimeRange> intersection = new TreeSet<TimeRange>(TimeRange.ORDER_BY_START);
+  /**
+   * Collects the boundaries of the blocked windows of every optional attendee into
+   * {@code boundaries}, sorted by time. Returns the sorted start times worth checking: mandatory
+   * slot starts and busy ends that leave room for the whole meeting inside a mandatory slot. Each
+   * start is returned once, however many of those fall on it.
+   */
+  private List<Integer> collectBoundaries(
+      AttendeeCalendarIndex index,
+      int[] optionalAttendees,
+      TimeRangeList timesMandatory,
+      int duration,
+      TimeRange horizon,
+      List<int[]> boundaries) {
+    List<Integer> candidateStarts = new ArrayList<>();
+    for (int slot = 0; slot < timesMandatory.size(); slot++) {
+      candidateStarts.add(timesMandatory.start(slot));
+    }
+    for (int i = 0; i < optionalAttendees.length; i++) {
+      // Busy times outside of the horizon cannot block a start inside it.
+      TimeRangeList busyTimes = index.getBusyRanges(optionalAttendees[i], horizon);
+      for (int busy = busyTimes.firstEndingAfter(horizon.start());
+          busy < busyTimes.size() && busyTimes.start(busy) < horizon.end();
+          busy++) {
+        boundaries.add(new int[] {busyTimes.start(busy) - duration + 1, i, 1});
+        boundaries.add(new int[] {busyTimes.end(busy), i, -1});
+        candidateStarts.add(busyTimes.end(busy));
+      }
+    }
+    boundaries.sort((a, b) -> Integer.compare(a[0], b[0]));
+    Collections.sort(candidateStarts);
+
+    List<Integer> feasibleStarts = new ArrayList<>();
+    int slot = 0;
+    for (int start : candidateStarts) {
+      while (slot < timesMandatory.size() && start > timesMandatory.end(slot) - duration) {
+        slot++;
+      }
+      if (slot == timesMandatory.size()) {
+        break;
+      }
+      boolean seen = !feasibleStarts.isEmpty()
+          && feasibleStarts.get(feasibleStarts.size() - 1) == start;
+      if (start >= timesMandatory.start(slot) && !seen) {
+        feasibleStarts.add(start);
+      }
+    }
+    return feasibleStarts;
+  }
 
-    List<TimeRange> oneList = new ArrayList<>(one);
-    List<TimeRange> twoList = new ArrayList<>(two);
+  // Receives each candidate start of a sweep. {@code blockedCount[i]} is zero exactly when optional
+  // attendee i is free for a meeting starting then, {@code free} is how many of them are and
+  // {@code weight} is how much they weigh. They stay the same for every start before
+  // {@code nextChange}.
+  private interface StartVisitor {
+    void visit(int start, int free, double weight, int[] blockedCount, int nextChange);
+  }
 
-    int i = 0;
-    int j = 0;
-    while (i < oneList.size() && j < twoList.size()) {
-      TimeRange oneTimeRange = oneList.get(i);
-      TimeRange twoTimeRange = twoList.get(j);
+  /**
+   * Walks the candidate start times in order, tracking which optional attendees are free for a
+   * meeting starting at each one, and passes each start to {@code visitor}.
+   */
+  private void sweepBoundaries(
+      List<int[]> boundaries, List<Integer> starts, double[] weights, StartVisitor visitor) {
+    boolean unitWeights = true;
+    for (double weight : weights) {
+      unitWeights &= weight == 1.0;
+    }
 
-      if (oneTimeRange.overlaps(twoTimeRange)) {
-        intersection.add(getOverlap(oneTimeRange, twoTimeRange));
-        if (oneTimeRange.end() < twoTimeRange.end()) {
-          i++;
-        } else {
-          j++;
+    QueryStats.global().add(QueryStats.Counter.SWEEP_STARTS, starts.size());
+    int[] blockedCount = new int[weights.length];
+    int free = weights.length;
+    double weight = 0.0;
+    boolean changed = true;
+
+    int next = 0;
+    for (int position = 0; position < starts.size(); position++) {
+      int start = starts.get(position);
+      while (next < boundaries.size() && boundaries.get(next)[0] <= start) {
+        int[] boundary = boundaries.get(next++);
+        int attendee = boundary[1];
+        if (boundary[2] > 0 && blockedCount[attendee]++ == 0) {
+          free--;
+          changed = true;
+        } else if (boundary[2] < 0 && --blockedCount[attendee] == 0) {
+          free++;
+          changed = true;
         }
-      } else {
-        if (oneTimeRange.start() < twoTimeRange.start()) {
-          i++;
+      }
+
+      if (changed) {
+        // Sum the weights in index order, the same way the exhaustive search does, so that equal
+        // sets always get equal weights.
+        if (unitWeights) {
+          weight = free;
         } else {
-          j++;
+          weight = 0.0;
+          for (int i = 0; i < weights.length; i++) {
+            if (blockedCount[i] == 0) {
+              weight += weights[i];
+            }
+          }
         }
+        changed = false;
       }
+
+      int nextChange = Math.min(
+          next < boundaries.size() ? boundaries.get(next)[0] : Integer.MAX_VALUE,
+          position + 1 < starts.size() ? starts.get(position + 1) : Integer.MAX_VALUE);
+      visitor.visit(start, free, weight, blockedCount, nextChange);
     }
-    return intersection;
   }
 
-  // Get attendees event times, then take the complement of the set.
-  private Map<String, Collection<TimeRange>> getAttendeesFreeTimes(
-      Collection<Event> events, Collection<String> attendees) {
-
-    Map<String, Collection<TimeRange>> attendeesFreeTimes = new HashMap<>();
-    Map<String, Collection<TimeRange>> attendeesEventTimes =
-        getAttendeesEventTimes(events, attendees);
-
-    for (String attendee : attendees) {
-      Collection<TimeRange> attendeeEventTimes = attendeesEventTimes.get(attendee);
-      Collection<TimeRange> attendeeFreeTimes = new TreeSet<TimeRange>(TimeRange.ORDER_BY_START);
+  // The exhaustive search visits equal sized subsets in lexicographic order of their indices.
+  static boolean visitedFirst(BitSet one, BitSet two) {
+    BitSet difference = (BitSet) one.clone();
+    difference.xor(two);
+    int firstDifference = difference.nextSetBit(0);
+    return firstDifference >= 0 && one.get(firstDifference);
+  }
 
-      // Removing any overlapping ranges by merging them.
-      attendeeEventTimes = mergeTimeRanges(attendeeEventTimes);
+  // Solve the query using the given attendees, not the attendees in the request
+  private TimeRangeList querySpecificAttendees(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon, int[] attendees) {
+    if (attendees.length >= HEAP_MERGE_THRESHOLD) {
+      return queryMergedBusyTimes(index, request, horizon, attendees);
+    }
 
-      int startTime = TimeRange.START_OF_DAY;
-      for (TimeRange eventTime : attendeeEventTimes) {
-        // Assumes none of the events are overlapping.
-        TimeRange freeTime = TimeRange.fromStartEnd(startTime, eventTime.start(), false);
-        attendeeFreeTimes.add(freeTime);
+    List<TimeRangeList> attendeesFreeTimes =
+        new ArrayList<>(Arrays.asList(getAttendeesFreeTimes(index, horizon, attendees)));
 
-        startTime = eventTime.end();
-      }
+    /**
+      If there are no participants, the whole horizon will be returned
+      If there are any participants, the intersection of the whole horizon and
+      the participants schedule will be the participants schedule.
+    */
+    attendeesFreeTimes.add(TimeRangeList.of(Collections.singletonList(horizon)));
 
-      if (startTime != TimeRange.END_OF_DAY) {
-        TimeRange freeTime = TimeRange.fromStartEnd(startTime, TimeRange.END_OF_DAY, true);
-        attendeeFreeTimes.add(freeTime);
-      }
+    return getAvailableTimes(attendeesFreeTimes, request);
+  }
 
-      attendeesFreeTimes.put(attendee, attendeeFreeTimes);
+  /**
+   * Finds the same times as intersecting every attendee's free times, for many attendees at once.
+   * The sorted busy lists are merged in one pass with a min-heap on their next start, so the cost
+   * is O(N log k) for N busy ranges across k attendees. The gaps in the union are the free times.
+   */
+  private TimeRangeList queryMergedBusyTimes(
+      AttendeeCalendarIndex index, MeetingRequest request, TimeRange horizon, int[] attendees) {
+    MergedBusyTimes merged = new MergedBusyTimes(
+        getBusyTimes(index, horizon, attendees), horizon.start(), horizon.end());
+    TimeRangeList union = new TimeRangeList();
+    while (merged.next()) {
+      union.add(merged.start(), merged.end());
     }
 
-    return attendeesFreeTimes;
+    union.complement(horizon.start(), horizon.end());
+    // Intersecting never yields empty ranges, so the gaps between touching events are dropped too.
+    union.removeShorterThan(Math.max(request.getDuration(), 1));
+    return union;
   }
 
-  private Map<String, Collection<TimeRange>> getAttendeesEventTimes(
-      Collection<Event> events, Collection<String> attendees) {
+  private TimeRangeList getAvailableTimes(
+      List<TimeRangeList> attendeesFreeTimes, MeetingRequest request) {
 
-    Map<String, Collection<TimeRange>> map = new HashMap<>();
-    for (String attendee : attendees) {
-      map.put(attendee, new TreeSet<TimeRange>(TimeRange.ORDER_BY_START));
+    TimeRangeList availableTimes = collapse(attendeesFreeTimes);
+    availableTimes.removeShorterThan(request.getDuration());
+    return availableTimes;
+  }
+
+  // Collapse multiple sets of timeranges into one list representing the total intersection
+  private TimeRangeList collapse(List<TimeRangeList> timeRangesCollection) {
+    if (timeRangesCollection.size() == 0) {
+      return new TimeRangeList();
     }
 
-    for (Event event : events) {
-      for (String attendee : event.getAttendees()) {
-        if (map.containsKey(attendee)) {
-          map.get(attendee).add(event.getWhen());
-        }
-      }
+    // Intersect in place, reusing the first list as the accumulator.
+    Iterator<TimeRangeList> it = timeRangesCollection.iterator();
+    TimeRangeList collapsed = it.next();
+    while (it.hasNext()) {
+      collapsed.intersect(it.next());
     }
 
-    return map;
+    return collapsed;
   }
 
-  private TimeRange getOverlap(TimeRange rangeOne, TimeRange rangeTwo) {
-    // Assumes that an overlap exists
-    int start = Math.max(rangeOne.start(), rangeTwo.start());
-    int end = Math.min(rangeOne.end(), rangeTwo.end());
-    return TimeRange.fromStartEnd(start, end, false);
+  private TimeRangeList[] getBusyTimes(
+      AttendeeCalendarIndex index, TimeRange horizon, int[] attendees) {
+    TimeRangeList[] busyTimes = new TimeRangeList[attendees.length];
+    for (int i = 0; i < attendees.length; i++) {
+      busyTimes[i] = index.getBusyRanges(attendees[i], horizon);
+    }
+    return busyTimes;
   }
 
-  // Given a collection of time ranges, merge any overlapping ranges into a single large range
-  private Collection<TimeRange> mergeTimeRanges(Collection<TimeRange> ranges) {
-    List<TimeRange> mergedTimes = new ArrayList<>();
-
-    if (ranges.size() == 0) {
-      return mergedTimes;
-    }
+  // Get a copy of each attendee's free times within the horizon from the index.
+  private TimeRangeList[] getAttendeesFreeTimes(
+      AttendeeCalendarIndex index, TimeRange horizon, int[] attendees) {
+    long startNanos = System.nanoTime();
+    TimeRangeList[] attendeesFreeTimes = new TimeRangeList[attendees.length];
 
-    TimeRange prev = ranges.iterator().next();
-    for (TimeRange range : ranges) {
-      if (prev.overlaps(range)) {
-        prev = mergeOverlappingRanges(prev, range);
-      } else {
-        mergedTimes.add(prev);
-        prev = range;
-      }
+    for (int i = 0; i < attendees.length; i++) {
+      // Copy, since the caller intersects the lists in place and the index may share them.
+      attendeesFreeTimes[i] = index.getFreeRanges(attendees[i], horizon).copy();
     }
-    mergedTimes.add(prev);
-
-    return mergedTimes;
-  }
 
-  private TimeRange mergeOverlappingRanges(TimeRange rangeOne, TimeRange rangeTwo) {
-    // Assumes that an overlap exists
-    int start = Math.min(rangeOne.start(), rangeTwo.start());
-    int end = Math.max(rangeOne.end(), rangeTwo.end());
-    return TimeRange.fromStartEnd(start, end, false);
+    QueryStats.global().recordPhase(QueryStats.Phase.FREE_TIMES, startNanos);
+    return attendeesFreeTimes;
   }
 }
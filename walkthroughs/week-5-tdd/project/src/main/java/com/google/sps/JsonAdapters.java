@@ -0,0 +1,245 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hand-written JSON adapters for {@code TimeRange}, {@code Event} and {@code MeetingRequest}, so
+ * the requests and responses the servlets handle most are read and written field by field from the
+ * stream instead of through reflection. The JSON is the same as Gson's reflective form, which is
+ * what script.js sends and expects.
+ *
+ * <p>The attendee names of an event are interned only once the whole event has been read and has
+ * passed the checks of its constructor, so a rejected event leaves nothing in the dictionary. The
+ * names in a request are never interned, since a request is only ever looked up in the dictionary
+ * and must not grow it.
+ */
+public final class JsonAdapters {
+  private static final Gson GSON = new GsonBuilder()
+      .registerTypeAdapter(TimeRange.class, new TimeRangeAdapter().nullSafe())
+      .registerTypeAdapter(Event.class, new EventAdapter().nullSafe())
+      .registerTypeAdapter(MeetingRequest.class, new MeetingRequestAdapter().nullSafe())
+      .create();
+
+  private JsonAdapters() {}
+
+  /**
+   * Returns a {@code Gson} with every adapter registered. Gson is thread-safe, so it is shared by
+   * all servlets.
+   */
+  public static Gson gson() {
+    return GSON;
+  }
+
+  private static final class TimeRangeAdapter extends TypeAdapter<TimeRange> {
+    @Override
+    public void write(JsonWriter out, TimeRange range) throws IOException {
+      out.beginObject();
+      out.name("start").value(range.start());
+      out.name("duration").value(range.duration());
+      out.endObject();
+    }
+
+    @Override
+    public TimeRange read(JsonReader in) throws IOException {
+      int start = 0;
+      int duration = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "start":
+            start = in.nextInt();
+            break;
+          case "duration":
+            duration = in.nextInt();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return TimeRange.fromStartDuration(start, duration);
+    }
+  }
+
+  private static final class EventAdapter extends TypeAdapter<Event> {
+    @Override
+    public void write(JsonWriter out, Event event) throws IOException {
+      out.beginObject();
+      out.name("title").value(event.getTitle());
+      out.name("when");
+      GSON.getAdapter(TimeRange.class).write(out, event.getWhen());
+      out.name("attendees");
+      writeNames(out, event.getAttendees());
+      out.endObject();
+    }
+
+    @Override
+    public Event read(JsonReader in) throws IOException {
+      String title = null;
+      TimeRange when = null;
+      List<String> attendees = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case "title":
+            title = in.nextString();
+            break;
+          case "when":
+            when = GSON.getAdapter(TimeRange.class).read(in);
+            break;
+          case "attendees":
+            attendees = readNameList(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      try {
+        return new Event(title, when, attendees);
+      } catch (IllegalArgumentException e) {
+        throw new JsonParseException(e.getMessage(), e);
+      }
+    }
+  }
+
+  private static final class MeetingRequestAdapter extends TypeAdapter<MeetingRequest> {
+    @Override
+    public void write(JsonWriter out, MeetingRequest request) throws IOException {
+      out.beginObject();
+      out.name("attendees");
+      writeNames(out, request.getAttendees());
+      out.name("optional_attendees");
+      writeNames(out, request.getOptionalAttendees());
+      out.name("optional_attendee_weights").beginObject();
+      for (String attendee : request.getOptionalAttendees()) {
+        double weight = request.getOptionalAttendeeWeight(attendee);
+        if (weight != MeetingRequest.DEFAULT_WEIGHT) {
+          out.name(attendee).value(weight);
+        }
+      }
+      out.endObject();
+      out.name("duration").value(request.getDuration());
+      out.name("deadline_millis").value(request.getDeadlineMillis());
+      out.endObject();
+    }
+
+    @Override
+    public MeetingRequest read(JsonReader in) throws IOException {
+      Collection<String> attendees = Collections.emptySet();
+      Collection<String> optionalAttendees = attendees;
+      Map<String, Double> weights = Collections.emptyMap();
+      long duration = 0;
+      long deadlineMillis = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case "attendees":
+            attendees = readNames(in);
+            break;
+          case "optional_attendees":
+            optionalAttendees = readNames(in);
+            break;
+          case "optional_attendee_weights":
+            weights = readWeights(in);
+            break;
+          case "duration":
+            duration = in.nextLong();
+            break;
+          case "deadline_millis":
+            deadlineMillis = in.nextLong();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      try {
+        return new MeetingRequest(attendees, optionalAttendees, weights, duration, deadlineMillis);
+      } catch (IllegalArgumentException e) {
+        throw new JsonParseException(e.getMessage(), e);
+      }
+    }
+
+    private static Map<String, Double> readWeights(JsonReader in) throws IOException {
+      Map<String, Double> weights = new HashMap<>();
+      in.beginObject();
+      while (in.hasNext()) {
+        weights.put(in.nextName(), in.nextDouble());
+      }
+      in.endObject();
+      return weights;
+    }
+  }
+
+  private static void writeNames(JsonWriter out, Iterable<String> names) throws IOException {
+    out.beginArray();
+    for (String name : names) {
+      out.value(name);
+    }
+    out.endArray();
+  }
+
+  // Returns a read-only set of the names, in the order they are read.
+  private static Set<String> readNames(JsonReader in) throws IOException {
+    Set<String> names = new LinkedHashSet<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      names.add(in.nextString());
+    }
+    in.endArray();
+    return Collections.unmodifiableSet(names);
+  }
+
+  // Returns the names in the order they are read, without interning them.
+  private static List<String> readNameList(JsonReader in) throws IOException {
+    List<String> names = new ArrayList<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      names.add(in.nextString());
+    }
+    in.endArray();
+    return names;
+  }
+}
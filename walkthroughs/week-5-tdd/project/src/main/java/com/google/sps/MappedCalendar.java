@@ -0,0 +1,418 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A calendar stored in a compact binary file that is memory-mapped instead of parsed. Opening one
+ * reads the header and the attendee names and checks that every offset and count in the file
+ * points inside it, so a truncated or corrupt file is rejected up front rather than in the middle
+ * of a query. Nothing else is decoded: each attendee's busy times are decoded from the mapped file
+ * the first time a query asks for them, and events are decoded when they are read. The heap only
+ * holds the parts of the calendar that are used.
+ *
+ * <p>Queries are not served from the mapping with zero copies. The scheduler works on attendee IDs
+ * from the global {@code AttendeeDictionary} and on {@code TimeRangeList}s, so opening a file
+ * interns every attendee name in it, and an attendee's busy times are copied into a list the first
+ * time they are used and kept for later queries. What the mapping saves is parsing: opening costs
+ * the same no matter how many events there are, and attendees nobody asks about are never decoded.
+ *
+ * <p>The file holds, in order:
+ *
+ * <ul>
+ *   <li>A header of {@code HEADER_INTS} ints: magic, format version, number of attendees, number
+ *       of events, and the byte offset of each section below.
+ *   <li>A string pool with every attendee name and event title once, in UTF-8.
+ *   <li>One entry per attendee: name offset and length in the pool, then where their busy times
+ *       start in the range section and how many there are.
+ *   <li>The range section. Each attendee's busy times, already sorted and merged, as an array of
+ *       starts followed by an array of ends.
+ *   <li>One entry per event: title offset and length, start, duration, then where its attendees
+ *       start in the event attendee section and how many there are.
+ *   <li>The event attendee section, as indexes into the attendee entries.
+ * </ul>
+ *
+ * Files are written to a temporary file that is then moved over the target, so readers never see
+ * a partial file. A mapping is limited to 2GB.
+ */
+public final class MappedCalendar {
+  private static final int MAGIC = 0x43414C53; // "CALS"
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_INTS = 10;
+  private static final int ATTENDEE_INTS = 4;
+  private static final int EVENT_INTS = 6;
+
+  private final ByteBuffer buffer;
+  private final int numAttendees;
+  private final int numEvents;
+  private final int stringPoolOffset;
+  private final int attendeeOffset;
+  private final int rangeOffset;
+  private final int eventOffset;
+  private final int eventAttendeeOffset;
+  // The global {@code AttendeeDictionary} ID of each attendee in the file.
+  private final int[] globalIds;
+  private final AttendeeCalendarIndex index;
+
+  private MappedCalendar(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.limit() < HEADER_INTS * Integer.BYTES
+        || buffer.getInt(0) != MAGIC
+        || buffer.getInt(4) != FORMAT_VERSION) {
+      throw new IOException("Not a calendar snapshot");
+    }
+    this.numAttendees = buffer.getInt(8);
+    this.numEvents = buffer.getInt(12);
+    this.stringPoolOffset = buffer.getInt(16);
+    this.attendeeOffset = buffer.getInt(20);
+    this.rangeOffset = buffer.getInt(24);
+    this.eventOffset = buffer.getInt(28);
+    this.eventAttendeeOffset = buffer.getInt(32);
+    checkSections();
+
+    // Queries look attendees up by their global ID, so those are the only thing read up front.
+    this.globalIds = new int[numAttendees];
+    for (int i = 0; i < numAttendees; i++) {
+      int entry = attendeeOffset + i * ATTENDEE_INTS * Integer.BYTES;
+      globalIds[i] = AttendeeDictionary.global().intern(
+          readString(buffer.getInt(entry), buffer.getInt(entry + 4)));
+    }
+    this.index = AttendeeCalendarIndex.mapped(new BusyTimes());
+  }
+
+  // Checks that the sections are in order inside the file and that every entry in them points
+  // inside the sections it refers to. Reads the entries, but decodes nothing.
+  private void checkSections() throws IOException {
+    long attendeeEnd = attendeeOffset + (long) numAttendees * ATTENDEE_INTS * Integer.BYTES;
+    long eventEnd = eventOffset + (long) numEvents * EVENT_INTS * Integer.BYTES;
+    if (numAttendees < 0
+        || numEvents < 0
+        || stringPoolOffset < HEADER_INTS * Integer.BYTES
+        || attendeeOffset < stringPoolOffset
+        || rangeOffset < attendeeEnd
+        || eventOffset < rangeOffset
+        || eventAttendeeOffset < eventEnd
+        || eventAttendeeOffset > buffer.limit()) {
+      throw new IOException("Corrupt calendar snapshot: bad header");
+    }
+
+    int poolLength = attendeeOffset - stringPoolOffset;
+    int numRangeInts = (eventOffset - rangeOffset) / Integer.BYTES;
+    for (int i = 0; i < numAttendees; i++) {
+      int entry = attendeeOffset + i * ATTENDEE_INTS * Integer.BYTES;
+      checkSlice(buffer.getInt(entry), buffer.getInt(entry + 4), poolLength, "attendee " + i);
+      // Each range takes two ints, its start and its end.
+      long count = buffer.getInt(entry + 12);
+      checkSlice(buffer.getInt(entry + 8), 2 * count, numRangeInts, "attendee " + i);
+    }
+
+    int numEventAttendees = (buffer.limit() - eventAttendeeOffset) / Integer.BYTES;
+    for (int i = 0; i < numEvents; i++) {
+      int entry = eventOffset + i * EVENT_INTS * Integer.BYTES;
+      checkSlice(buffer.getInt(entry), buffer.getInt(entry + 4), poolLength, "event " + i);
+      if (buffer.getInt(entry + 12) < 0) {
+        throw new IOException("Corrupt calendar snapshot: event " + i + " has a negative duration");
+      }
+      checkSlice(buffer.getInt(entry + 16), buffer.getInt(entry + 20), numEventAttendees,
+          "event " + i);
+    }
+    for (int i = 0; i < numEventAttendees; i++) {
+      int attendee = buffer.getInt(eventAttendeeOffset + i * Integer.BYTES);
+      if (attendee < 0 || attendee >= numAttendees) {
+        throw new IOException("Corrupt calendar snapshot: no attendee " + attendee);
+      }
+    }
+  }
+
+  // Checks that {@code length} items from {@code offset} fit in a section of {@code sectionLength}.
+  private static void checkSlice(long offset, long length, long sectionLength, String owner)
+      throws IOException {
+    if (offset < 0 || length < 0 || offset + length > sectionLength) {
+      throw new IOException("Corrupt calendar snapshot: " + owner + " points outside the file");
+    }
+  }
+
+  /**
+   * Maps the calendar file at {@code path}. The file stays mapped until the calendar is garbage
+   * collected.
+   */
+  public static MappedCalendar open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new MappedCalendar(buffer);
+    }
+  }
+
+  /**
+   * Writes {@code events} to a calendar file at {@code path}, replacing it atomically.
+   */
+  public static void write(Collection<Event> events, Path path) throws IOException {
+    // Number the attendees and pool the strings.
+    Map<String, Integer> attendeeNumbers = new HashMap<>();
+    List<String> attendees = new ArrayList<>();
+    StringPool pool = new StringPool();
+    for (Event event : events) {
+      pool.add(event.getTitle());
+      for (String attendee : event.getAttendees()) {
+        if (!attendeeNumbers.containsKey(attendee)) {
+          attendeeNumbers.put(attendee, attendees.size());
+          attendees.add(attendee);
+          pool.add(attendee);
+        }
+      }
+    }
+
+    // Reuse the index to sort and merge everyone's busy times.
+    AttendeeCalendarIndex busyIndex = AttendeeCalendarIndex.of(events);
+    List<TimeRangeList> busyTimes = new ArrayList<>(attendees.size());
+    int numRangeInts = 0;
+    for (String attendee : attendees) {
+      TimeRangeList busy = busyIndex.getBusyRanges(AttendeeDictionary.global().lookup(attendee));
+      busyTimes.add(busy);
+      numRangeInts += 2 * busy.size();
+    }
+    int numEventAttendees = 0;
+    for (Event event : events) {
+      numEventAttendees += event.getAttendees().size();
+    }
+
+    int stringPoolOffset = HEADER_INTS * Integer.BYTES;
+    int attendeeOffset = stringPoolOffset + pool.paddedLength();
+    int rangeOffset = attendeeOffset + attendees.size() * ATTENDEE_INTS * Integer.BYTES;
+    int eventOffset = rangeOffset + numRangeInts * Integer.BYTES;
+    int eventAttendeeOffset = eventOffset + events.size() * EVENT_INTS * Integer.BYTES;
+    long fileSize = (long) eventAttendeeOffset + (long) numEventAttendees * Integer.BYTES;
+    if (fileSize > Integer.MAX_VALUE) {
+      throw new IOException("Calendar is too large to map: " + fileSize + " bytes");
+    }
+
+    Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), "calendar", ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+          DataOutputStream out = new DataOutputStream(
+              new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+        for (int value : new int[] {MAGIC, FORMAT_VERSION, attendees.size(), events.size(),
+            stringPoolOffset, attendeeOffset, rangeOffset, eventOffset, eventAttendeeOffset, 0}) {
+          out.writeInt(value);
+        }
+        pool.writeTo(out);
+
+        int nextRange = 0;
+        for (int i = 0; i < attendees.size(); i++) {
+          int[] name = pool.get(attendees.get(i));
+          out.writeInt(name[0]);
+          out.writeInt(name[1]);
+          out.writeInt(nextRange);
+          out.writeInt(busyTimes.get(i).size());
+          nextRange += 2 * busyTimes.get(i).size();
+        }
+        for (TimeRangeList busy : busyTimes) {
+          for (int range = 0; range < busy.size(); range++) {
+            out.writeInt(busy.start(range));
+          }
+          for (int range = 0; range < busy.size(); range++) {
+            out.writeInt(busy.end(range));
+          }
+        }
+
+        int nextAttendee = 0;
+        for (Event event : events) {
+          int[] title = pool.get(event.getTitle());
+          out.writeInt(title[0]);
+          out.writeInt(title[1]);
+          out.writeInt(event.getWhen().start());
+          out.writeInt(event.getWhen().duration());
+          out.writeInt(nextAttendee);
+          out.writeInt(event.getAttendees().size());
+          nextAttendee += event.getAttendees().size();
+        }
+        for (Event event : events) {
+          for (String attendee : event.getAttendees()) {
+            out.writeInt(attendeeNumbers.get(attendee));
+          }
+        }
+
+        // Make the contents durable before the new name points at them, so a crash cannot leave
+        // the target naming a file that was only partly written.
+        out.flush();
+        channel.force(true);
+      }
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Returns an index whose busy times are read from the file as they are needed.
+   */
+  public AttendeeCalendarIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns a read-only list of the events in the file, in the order they were written. Each event
+   * is decoded when it is read.
+   */
+  public List<Event> getEvents() {
+    return new AbstractList<Event>() {
+      @Override
+      public Event get(int i) {
+        if (i < 0 || i >= numEvents) {
+          throw new IndexOutOfBoundsException("No event " + i);
+        }
+        int entry = eventOffset + i * EVENT_INTS * Integer.BYTES;
+        String title = readString(buffer.getInt(entry), buffer.getInt(entry + 4));
+        TimeRange when =
+            TimeRange.fromStartDuration(buffer.getInt(entry + 8), buffer.getInt(entry + 12));
+        int firstAttendee = buffer.getInt(entry + 16);
+        int[] ids = new int[buffer.getInt(entry + 20)];
+        for (int j = 0; j < ids.length; j++) {
+          ids[j] =
+              globalIds[buffer.getInt(eventAttendeeOffset + (firstAttendee + j) * Integer.BYTES)];
+        }
+        return new Event(title, when, AttendeeSet.ofIds(ids, ids.length));
+      }
+
+      @Override
+      public int size() {
+        return numEvents;
+      }
+    };
+  }
+
+  /**
+   * Returns a store that starts out with the events in this file and uses its index, so nothing
+   * is decoded until it is queried or written to.
+   */
+  public EventStore toEventStore() {
+    return new EventStore(getEvents(), index);
+  }
+
+  private String readString(int offset, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(stringPoolOffset + offset);
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Decodes the busy times of each attendee in the file the first time they are asked for.
+   */
+  final class BusyTimes {
+    // Indexed by global {@code AttendeeDictionary} ID. -1 for attendees not in the file.
+    private final int[] fileIndexes;
+    private final AtomicReferenceArray<TimeRangeList> decoded;
+
+    private BusyTimes() {
+      int size = 0;
+      for (int id : globalIds) {
+        size = Math.max(size, id + 1);
+      }
+      fileIndexes = new int[size];
+      Arrays.fill(fileIndexes, -1);
+      for (int i = 0; i < globalIds.length; i++) {
+        fileIndexes[globalIds[i]] = i;
+      }
+      decoded = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Returns the busy times of the attendee with the given global ID, or null if they are not in
+     * the file.
+     */
+    TimeRangeList get(int id) {
+      if (id < 0 || id >= fileIndexes.length || fileIndexes[id] < 0) {
+        return null;
+      }
+      TimeRangeList busy = decoded.get(id);
+      if (busy == null) {
+        // Two threads may both decode the list, but they get the same answer.
+        int entry = attendeeOffset + fileIndexes[id] * ATTENDEE_INTS * Integer.BYTES;
+        int first = rangeOffset + buffer.getInt(entry + 8) * Integer.BYTES;
+        int count = buffer.getInt(entry + 12);
+        busy = new TimeRangeList(count);
+        for (int range = 0; range < count; range++) {
+          busy.add(buffer.getInt(first + range * Integer.BYTES),
+              buffer.getInt(first + (count + range) * Integer.BYTES));
+        }
+        decoded.set(id, busy);
+      }
+      return busy;
+    }
+
+    /**
+     * Returns one more than the largest global ID with busy times in the file.
+     */
+    int size() {
+      return fileIndexes.length;
+    }
+  }
+
+  // Stores each distinct string once and remembers its offset and length in bytes.
+  private static final class StringPool {
+    private final Map<String, int[]> strings = new HashMap<>();
+    private final List<byte[]> bytes = new ArrayList<>();
+    private int length = 0;
+
+    void add(String string) {
+      if (!strings.containsKey(string)) {
+        byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+        strings.put(string, new int[] {length, encoded.length});
+        bytes.add(encoded);
+        length += encoded.length;
+      }
+    }
+
+    int[] get(String string) {
+      return strings.get(string);
+    }
+
+    // Pads the pool so the int sections after it stay aligned.
+    int paddedLength() {
+      return (length + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+      for (byte[] string : bytes) {
+        out.write(string);
+      }
+      for (int i = length; i < paddedLength(); i++) {
+        out.writeByte(0);
+      }
+    }
+  }
+}
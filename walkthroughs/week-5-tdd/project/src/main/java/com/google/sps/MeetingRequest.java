@@ -15,12 +15,16 @@
 package com.google.sps;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public final class MeetingRequest {
+  static final double DEFAULT_WEIGHT = 1.0;
 
   /////////////////////////////////////////////
   // WARNING:
@@ -30,40 +34,189 @@ public final class MeetingRequest {
   // same name in script.js
   /////////////////////////////////////////////
 
-  // All the people that should be attending this new meeting. Use a set to avoid duplicates.
-  private final Collection<String> attendees = new HashSet<>();
+  // All the people that should be attending this new meeting. Use a set to avoid duplicates. A
+  // group defined on the index stands for all of its members. Names are kept as they are given and
+  // only looked up in the {@code AttendeeDictionary} when the request is answered, so requests
+  // never add names to it.
+  private final Collection<String> attendees;
 
   // Some optional attendees for this new meeting. Use a set to avoid duplicates.
-  private final Collection<String> optional_attendees = new HashSet<>();
+  private Collection<String> optional_attendees = Collections.emptySet();
+
+  // How much each optional attendee counts towards the best solution. Attendees missing from the
+  // map have a weight of one.
+  private Map<String, Double> optional_attendee_weights = Collections.emptyMap();
 
   // The duration of the meeting in minutes.
   private final long duration;
 
+  // How long the server may search for the best optional attendees, in milliseconds. Zero means
+  // there is no limit.
+  private long deadline_millis;
+
+  // Only set on the copies made by {@code resolve()}: the attendees that are in the dictionary, and
+  // the names of the optional attendees that are not.
+  private transient AttendeeSet attendeeIds;
+  private transient AttendeeSet optionalAttendeeIds;
+  private transient List<String> unknownOptionalAttendees;
+
   public MeetingRequest(Collection<String> attendees, long duration) {
     this.duration = duration;
-    this.attendees.addAll(attendees);
+    this.attendees = Collections.unmodifiableSet(new LinkedHashSet<>(attendees));
   }
 
   /**
-   * Returns a read-only copy of the people who are required to attend this meeting.
+   * Creates a request with every field given, as read from JSON. The weights and deadline are
+   * checked the same way {@code addOptionalAttendee} and {@code setDeadlineMillis} check them.
+   * Nothing is copied, so the collections must be read-only sets.
+   */
+  MeetingRequest(Collection<String> attendees, Collection<String> optionalAttendees,
+      Map<String, Double> optionalAttendeeWeights, long duration, long deadlineMillis) {
+    for (double weight : optionalAttendeeWeights.values()) {
+      checkWeight(weight);
+    }
+    if (deadlineMillis < 0) {
+      throw new IllegalArgumentException("deadlineMillis cannot be negative");
+    }
+    this.attendees = attendees;
+    this.optional_attendees = optionalAttendees;
+    this.optional_attendee_weights = optionalAttendeeWeights;
+    this.duration = duration;
+    this.deadline_millis = deadlineMillis;
+  }
+
+  private MeetingRequest(MeetingRequest request) {
+    this.attendees = request.attendees;
+    this.optional_attendees = request.optional_attendees;
+    this.optional_attendee_weights = request.optional_attendee_weights;
+    this.duration = request.duration;
+    this.deadline_millis = request.deadline_millis;
+  }
+
+  /**
+   * Returns a read-only set of the people who are required to attend this meeting.
    */
   public Collection<String> getAttendees() {
-    return Collections.unmodifiableCollection(attendees);
+    return attendees;
   }
 
   /**
-   * Returns a read-only copy of the people who are optional to attend this meeting.
+   * Returns a read-only set of the people who are optional to attend this meeting.
    */
   public Collection<String> getOptionalAttendees() {
-    return Collections.unmodifiableCollection(optional_attendees);
+    return optional_attendees;
+  }
+
+  /**
+   * Returns a copy of this request with its attendees looked up in the {@code AttendeeDictionary}
+   * once, so every part of a query sees the same IDs even if names are added to the dictionary
+   * meanwhile. A name that is not in the dictionary has never been in an event, so that attendee
+   * is free all the time. Copies are never changed, and resolving one again returns it.
+   */
+  MeetingRequest resolve() {
+    if (attendeeIds != null) {
+      return this;
+    }
+    MeetingRequest resolved = new MeetingRequest(this);
+    List<String> unknown = new ArrayList<>();
+    resolved.attendeeIds = lookUp(attendees, new ArrayList<>());
+    resolved.optionalAttendeeIds = lookUp(optional_attendees, unknown);
+    resolved.unknownOptionalAttendees = Collections.unmodifiableList(unknown);
+    return resolved;
+  }
+
+  // Returns the IDs of the names in the dictionary and adds the others to {@code unknown}.
+  private static AttendeeSet lookUp(Collection<String> names, List<String> unknown) {
+    AttendeeDictionary dictionary = AttendeeDictionary.global();
+    int[] ids = new int[names.size()];
+    int count = 0;
+    for (String name : names) {
+      int id = dictionary.lookup(name);
+      if (id >= 0) {
+        ids[count++] = id;
+      } else {
+        unknown.add(name);
+      }
+    }
+    return AttendeeSet.ofIds(ids, count);
+  }
+
+  /**
+   * Returns the sorted {@code AttendeeDictionary} IDs of the required attendees that are in it. The
+   * array may be shared, so it must not be modified.
+   */
+  int[] getAttendeeIds() {
+    return resolve().attendeeIds.ids();
+  }
+
+  /**
+   * Returns the sorted {@code AttendeeDictionary} IDs of the optional attendees that are in it. The
+   * array may be shared, so it must not be modified.
+   */
+  int[] getOptionalAttendeeIds() {
+    return resolve().optionalAttendeeIds.ids();
+  }
+
+  /**
+   * Returns the weights of the optional attendees, in the same order as
+   * {@code getOptionalAttendeeIds()}. Call both on the same resolved request, so they line up.
+   */
+  double[] getOptionalAttendeeWeights() {
+    AttendeeSet ids = resolve().optionalAttendeeIds;
+    double[] weights = new double[ids.size()];
+    int i = 0;
+    for (String attendee : ids) {
+      weights[i++] = getOptionalAttendeeWeight(attendee);
+    }
+    return weights;
+  }
+
+  /**
+   * Returns the optional attendees that are not in the {@code AttendeeDictionary}, who are free
+   * all the time.
+   */
+  List<String> getUnknownOptionalAttendees() {
+    return resolve().unknownOptionalAttendees;
+  }
+
+  /**
+   * Returns how much {@code attendee} counts towards the best solution. Optional attendees added
+   * without a weight have a weight of one.
+   */
+  public double getOptionalAttendeeWeight(String attendee) {
+    if (optional_attendee_weights == null) {
+      return DEFAULT_WEIGHT;
+    }
+    return optional_attendee_weights.getOrDefault(attendee, DEFAULT_WEIGHT);
   }
 
   /**
    * Adds one optional attendee for the meeting.
    */
   public void addOptionalAttendee(String attendee) {
+    addOptionalAttendee(attendee, DEFAULT_WEIGHT);
+  }
+
+  /**
+   * Adds one optional attendee for the meeting. The best time is the one where the optional
+   * attendees who can make it have the largest total weight.
+   */
+  public void addOptionalAttendee(String attendee, double weight) {
+    checkWeight(weight);
     if (!attendees.contains(attendee)) {
-      optional_attendees.add(attendee);
+      Set<String> names = new LinkedHashSet<>(optional_attendees);
+      names.add(attendee);
+      optional_attendees = Collections.unmodifiableSet(names);
+
+      Map<String, Double> weights = optional_attendee_weights == null
+          ? new HashMap<>()
+          : new HashMap<>(optional_attendee_weights);
+      if (weight == DEFAULT_WEIGHT) {
+        weights.remove(attendee);
+      } else {
+        weights.put(attendee, weight);
+      }
+      optional_attendee_weights = weights;
     }
   }
 
@@ -74,6 +227,28 @@ public final class MeetingRequest {
     return duration;
   }
 
+  /**
+   * Returns how long the search for the best optional attendees may take, in milliseconds. Zero
+   * means there is no limit.
+   */
+  public long getDeadlineMillis() {
+    return deadline_millis;
+  }
+
+  public void setDeadlineMillis(long deadlineMillis) {
+    if (deadlineMillis < 0) {
+      throw new IllegalArgumentException("deadlineMillis cannot be negative");
+    }
+    this.deadline_millis = deadlineMillis;
+  }
+
+  // The solvers prune on the weight still to be gained, which only works if no weight is negative.
+  private static void checkWeight(double weight) {
+    if (!(weight >= 0) || Double.isInfinite(weight)) {
+      throw new IllegalArgumentException("weight must be a non-negative number");
+    }
+  }
+
   public boolean optionalAttendeesOnly() {
     return attendees.size() == 0 && optional_attendees.size() != 0;
   }
@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.PriorityQueue;
+
+/**
+ * Walks the union of several attendees' busy times in order, one merged range at a time. The
+ * sorted busy lists are merged lazily with a min-heap on their next start, so reading the first
+ * few ranges only costs O(k log k) for k attendees, and reading all N of them costs O(N log k).
+ */
+final class MergedBusyTimes {
+  private final TimeRangeList[] busyTimes;
+  private final int to;
+  // Each entry is {attendee index, position in their busy list}, ordered by that range's start.
+  private final PriorityQueue<int[]> heads;
+
+  private int start;
+  private int end;
+
+  /**
+   * Only the busy times that overlap [from, to) are visited. The first range may start before
+   * {@code from}.
+   */
+  MergedBusyTimes(TimeRangeList[] busyTimes, int from, int to) {
+    this.busyTimes = busyTimes;
+    this.to = to;
+    this.heads = new PriorityQueue<>(Math.max(busyTimes.length, 1),
+        (a, b) -> Integer.compare(busyTimes[a[0]].start(a[1]), busyTimes[b[0]].start(b[1])));
+
+    for (int i = 0; i < busyTimes.length; i++) {
+      int first = busyTimes[i].firstEndingAfter(from);
+      if (first < busyTimes[i].size() && busyTimes[i].start(first) < to) {
+        heads.add(new int[] {i, first});
+      }
+    }
+  }
+
+  /**
+   * Moves to the next merged range. Returns false once there are none left.
+   */
+  boolean next() {
+    if (heads.isEmpty()) {
+      return false;
+    }
+
+    int[] head = heads.poll();
+    start = busyTimes[head[0]].start(head[1]);
+    end = busyTimes[head[0]].end(head[1]);
+    advance(head);
+
+    // Absorb every range that starts before the merged range ends.
+    while (!heads.isEmpty() && busyTimes[heads.peek()[0]].start(heads.peek()[1]) <= end) {
+      head = heads.poll();
+      end = Math.max(end, busyTimes[head[0]].end(head[1]));
+      advance(head);
+    }
+    return true;
+  }
+
+  int start() {
+    return start;
+  }
+
+  int end() {
+    return end;
+  }
+
+  private void advance(int[] head) {
+    TimeRangeList busy = busyTimes[head[0]];
+    if (++head[1] < busy.size() && busy.start(head[1]) < to) {
+      heads.add(head);
+    }
+  }
+}
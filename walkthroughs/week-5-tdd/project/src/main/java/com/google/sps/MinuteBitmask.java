@@ -0,0 +1,216 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+
+/**
+ * A set of minutes in a day, stored as one bit per minute. The whole day fits in 23 longs, so
+ * intersecting two sets is a handful of word-wise ANDs and finding free ranges is a scan with
+ * {@code Long.numberOfTrailingZeros}.
+ */
+public final class MinuteBitmask {
+  private static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+  private static final int WORDS = (MINUTES_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+
+  // Bits past the end of the day are always zero.
+  private final long[] words = new long[WORDS];
+
+  private MinuteBitmask() {}
+
+  /**
+   * Returns a mask where every minute of the day is set.
+   */
+  public static MinuteBitmask wholeDay() {
+    MinuteBitmask mask = new MinuteBitmask();
+    mask.set(0, MINUTES_PER_DAY);
+    return mask;
+  }
+
+  /**
+   * Returns a mask of the minutes outside of {@code busyTimes}.
+   */
+  public static MinuteBitmask freeTimes(Collection<TimeRange> busyTimes) {
+    MinuteBitmask mask = wholeDay();
+    for (TimeRange busy : busyTimes) {
+      mask.clear(busy.start(), busy.end());
+    }
+    return mask;
+  }
+
+  /**
+   * Returns a mask of the minutes outside of {@code busyTimes}.
+   */
+  public static MinuteBitmask freeTimes(TimeRangeList busyTimes) {
+    MinuteBitmask mask = wholeDay();
+    for (int i = 0; i < busyTimes.size(); i++) {
+      mask.clear(busyTimes.start(i), busyTimes.end(i));
+    }
+    return mask;
+  }
+
+  public MinuteBitmask copy() {
+    MinuteBitmask copy = new MinuteBitmask();
+    System.arraycopy(words, 0, copy.words, 0, WORDS);
+    return copy;
+  }
+
+  /**
+   * Keeps only the minutes that are also set in {@code other}.
+   */
+  public void and(MinuteBitmask other) {
+    for (int i = 0; i < WORDS; i++) {
+      words[i] &= other.words[i];
+    }
+  }
+
+  /**
+   * Keeps only the minutes that start a run of at least {@code duration} set minutes. Afterwards,
+   * minute t is set if and only if a meeting of {@code duration} could start at t.
+   */
+  public void keepWindowStarts(int duration) {
+    // Each step ANDs the mask with itself shifted down, doubling the length of the run it checks.
+    int covered = 1;
+    while (covered < duration) {
+      int shift = Math.min(covered, duration - covered);
+      andShiftedDown(shift);
+      covered += shift;
+    }
+  }
+
+  public boolean get(int minute) {
+    return minute >= 0
+        && minute < MINUTES_PER_DAY
+        && (words[minute / Long.SIZE] & (1L << minute)) != 0;
+  }
+
+  public boolean isEmpty() {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the first set minute at or after {@code from}, or the end of the day if there is none.
+   */
+  public int nextSetMinute(int from) {
+    int index = from / Long.SIZE;
+    if (index >= WORDS) {
+      return MINUTES_PER_DAY;
+    }
+
+    long word = words[index] & (-1L << from);
+    while (word == 0) {
+      if (++index == WORDS) {
+        return MINUTES_PER_DAY;
+      }
+      word = words[index];
+    }
+    return index * Long.SIZE + Long.numberOfTrailingZeros(word);
+  }
+
+  /**
+   * Returns the first unset minute at or after {@code from}, or the end of the day if there is
+   * none.
+   */
+  public int nextClearMinute(int from) {
+    int index = from / Long.SIZE;
+    if (index >= WORDS) {
+      return MINUTES_PER_DAY;
+    }
+
+    long word = ~words[index] & (-1L << from);
+    while (word == 0) {
+      if (++index == WORDS) {
+        return MINUTES_PER_DAY;
+      }
+      word = ~words[index];
+    }
+    return Math.min(index * Long.SIZE + Long.numberOfTrailingZeros(word), MINUTES_PER_DAY);
+  }
+
+  /**
+   * Adds one to {@code counts[minute]} for every set minute.
+   */
+  public void addTo(int[] counts) {
+    for (int i = 0; i < WORDS; i++) {
+      long word = words[i];
+      while (word != 0) {
+        counts[i * Long.SIZE + Long.numberOfTrailingZeros(word)]++;
+        word &= word - 1;
+      }
+    }
+  }
+
+  /**
+   * Adds {@code weight} to {@code sums[minute]} for every set minute.
+   */
+  public void addTo(double[] sums, double weight) {
+    for (int i = 0; i < WORDS; i++) {
+      long word = words[i];
+      while (word != 0) {
+        sums[i * Long.SIZE + Long.numberOfTrailingZeros(word)] += weight;
+        word &= word - 1;
+      }
+    }
+  }
+
+  /**
+   * Returns every run of set minutes that lasts at least {@code minDuration} minutes, in order.
+   */
+  public TimeRangeList ranges(long minDuration) {
+    TimeRangeList ranges = new TimeRangeList();
+    int start = nextSetMinute(0);
+    while (start < MINUTES_PER_DAY) {
+      int end = nextClearMinute(start);
+      if (end - start >= minDuration) {
+        ranges.add(start, end);
+      }
+      start = nextSetMinute(end);
+    }
+    return ranges;
+  }
+
+  // Sets every minute in [start, end).
+  private void set(int start, int end) {
+    for (int minute = start; minute < end; minute++) {
+      words[minute / Long.SIZE] |= 1L << minute;
+    }
+  }
+
+  // Clears every minute in [start, end), ignoring any part outside of the day.
+  private void clear(int start, int end) {
+    for (int minute = Math.max(start, 0); minute < Math.min(end, MINUTES_PER_DAY); minute++) {
+      words[minute / Long.SIZE] &= ~(1L << minute);
+    }
+  }
+
+  // Keeps minute t only if minute t + shift is also set. Minutes past the end of the day are unset.
+  private void andShiftedDown(int shift) {
+    int wordShift = shift / Long.SIZE;
+    int bitShift = shift % Long.SIZE;
+    for (int i = 0; i < WORDS; i++) {
+      // Words are updated in ascending order and only read from at or above i, so reading the
+      // not yet updated words is safe.
+      long low = i + wordShift < WORDS ? words[i + wordShift] : 0;
+      long high = i + wordShift + 1 < WORDS ? words[i + wordShift + 1] : 0;
+      long shifted = bitShift == 0 ? low : (low >>> bitShift) | (high << (Long.SIZE - bitShift));
+      words[i] &= shifted;
+    }
+  }
+}
@@ -0,0 +1,285 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Branch-and-bound search over the subsets of optional attendees, split across a
+ * {@code ForkJoinPool}. It finds the same solution as the exhaustive search, but skips any branch
+ * that cannot beat the best solution found so far:
+ *
+ * <ul>
+ *   <li>If no slot is left for the attendees chosen so far, adding more attendees will not make
+ *       one appear.
+ *   <li>If choosing every remaining attendee would still give less weight than the best solution,
+ *       the branch cannot win.
+ * </ul>
+ *
+ * The best solution is shared by every task through an atomic reference, so a good solution found
+ * on one core prunes branches on all of them.
+ *
+ * <p>With a deadline, the search becomes an anytime search: it starts from a greedy solution,
+ * improves on it until the deadline passes and then returns the best solution found so far, which
+ * is only marked as proven optimal if the whole tree was searched. The search stops the same way
+ * if the thread waiting for it is interrupted.
+ */
+final class OptionalAttendeeSearch {
+  // Branches with fewer attendees left to decide than this are searched on the current thread.
+  private static final int FORK_THRESHOLD = 8;
+  private static final long NO_DEADLINE = Long.MAX_VALUE;
+  // How far, relative to the total weight, a bound may fall short of the best weight before the
+  // branch is pruned. Far more than the rounding error of summing the weights in another order.
+  private static final double BOUND_SLACK = 1e-9;
+
+  private final TimeRangeList timesMandatory;
+  private final TimeRangeList[] optionalFreeTimes;
+  private final double[] weights;
+  // remainingWeight[i] is the total weight of the attendees from i on.
+  private final double[] remainingWeight;
+  private final double boundSlack;
+  private final long duration;
+  private final long deadlineNanos;
+  private final AtomicReference<Candidate> best = new AtomicReference<>();
+  private volatile boolean timedOut = false;
+  private volatile boolean cancelled = false;
+
+  /**
+   * @param timesMandatory The slots that work for every mandatory attendee, at least
+   *     {@code duration} long.
+   * @param optionalFreeTimes The free times of each optional attendee, in the order the exhaustive
+   *     search would consider them.
+   * @param weights The weight of each optional attendee, in the same order.
+   * @param duration The length of the meeting in minutes.
+   */
+  OptionalAttendeeSearch(TimeRangeList timesMandatory, TimeRangeList[] optionalFreeTimes,
+      double[] weights, long duration) {
+    this(timesMandatory, optionalFreeTimes, weights, duration, NO_DEADLINE);
+  }
+
+  /**
+   * @param deadlineNanos The {@code System.nanoTime()} after which the search stops.
+   */
+  OptionalAttendeeSearch(TimeRangeList timesMandatory, TimeRangeList[] optionalFreeTimes,
+      double[] weights, long duration, long deadlineNanos) {
+    this.timesMandatory = timesMandatory;
+    this.optionalFreeTimes = optionalFreeTimes;
+    this.weights = weights;
+    this.remainingWeight = new double[weights.length + 1];
+    for (int i = weights.length - 1; i >= 0; i--) {
+      remainingWeight[i] = remainingWeight[i + 1] + weights[i];
+    }
+    this.boundSlack = BOUND_SLACK * remainingWeight[0];
+    this.duration = duration;
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  Solution search(ForkJoinPool pool) {
+    Candidate mandatoryOnly = new Candidate(new Solution(0, timesMandatory), new BitSet());
+    best.set(mandatoryOnly);
+    if (mandatoryOnly.solution.isValid()) {
+      if (deadlineNanos != NO_DEADLINE) {
+        // Have a good answer ready in case the deadline passes early.
+        offer(greedy());
+      }
+      Branch root = new Branch(timesMandatory, new BitSet(), 0.0, 0);
+      pool.execute(root);
+      try {
+        root.get();
+      } catch (InterruptedException e) {
+        // Nobody is waiting for the answer any more, so prune everything that is left. Tasks on
+        // the pool are never interrupted themselves, so they only see it through the flag.
+        cancelled = true;
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+
+    Solution solution = best.get().solution;
+    solution.setProvenOptimal(!timedOut && !cancelled);
+    return solution;
+  }
+
+  /**
+   * Adds the optional attendees one at a time, the heaviest ones first and then the ones with the
+   * most usable free time, keeping each one that still leaves a slot for the meeting.
+   */
+  private Candidate greedy() {
+    Integer[] order = new Integer[optionalFreeTimes.length];
+    long[] coverage = new long[optionalFreeTimes.length];
+    for (int i = 0; i < optionalFreeTimes.length; i++) {
+      order[i] = i;
+      TimeRangeList shared = timesMandatory.copy();
+      shared.intersect(optionalFreeTimes[i]);
+      shared.removeShorterThan(duration);
+      for (int range = 0; range < shared.size(); range++) {
+        coverage[i] += shared.end(range) - shared.start(range);
+      }
+    }
+    Arrays.sort(order, (a, b) -> weights[a] != weights[b]
+        ? Double.compare(weights[b], weights[a])
+        : Long.compare(coverage[b], coverage[a]));
+
+    TimeRangeList available = timesMandatory;
+    BitSet group = new BitSet(optionalFreeTimes.length);
+    for (int i : order) {
+      TimeRangeList next = available.copy();
+      next.intersect(optionalFreeTimes[i]);
+      next.removeShorterThan(duration);
+      if (!next.isEmpty()) {
+        available = next;
+        group.set(i);
+      }
+    }
+    // Sum the weights in index order, the same way the search does.
+    double weight = 0.0;
+    for (int i = group.nextSetBit(0); i >= 0; i = group.nextSetBit(i + 1)) {
+      weight += weights[i];
+    }
+    return new Candidate(new Solution(group.cardinality(), weight, available), group);
+  }
+
+  private final class Branch extends RecursiveAction {
+    private final TimeRangeList available;
+    private final BitSet group;
+    private final double weight;
+    private final int next;
+
+    Branch(TimeRangeList available, BitSet group, double weight, int next) {
+      this.available = available;
+      this.group = group;
+      this.weight = weight;
+      this.next = next;
+    }
+
+    @Override
+    protected void compute() {
+      if (optionalFreeTimes.length - next < FORK_THRESHOLD) {
+        explore(available, group, weight, next);
+        return;
+      }
+
+      List<Branch> branches = new ArrayList<>();
+      for (int i = next; i < optionalFreeTimes.length; i++) {
+        TimeRangeList childAvailable = withAttendee(available, group, weight, i);
+        if (childAvailable != null) {
+          BitSet childGroup = (BitSet) group.clone();
+          childGroup.set(i);
+          branches.add(new Branch(childAvailable, childGroup, weight + weights[i], i + 1));
+        }
+      }
+      invokeAll(branches);
+    }
+  }
+
+  // Searches every extension of {@code group} with attendees from {@code next} on.
+  private void explore(TimeRangeList available, BitSet group, double weight, int next) {
+    for (int i = next; i < optionalFreeTimes.length; i++) {
+      TimeRangeList childAvailable = withAttendee(available, group, weight, i);
+      if (childAvailable != null) {
+        group.set(i);
+        explore(childAvailable, group, weight + weights[i], i + 1);
+        group.clear(i);
+      }
+    }
+  }
+
+  /**
+   * Adds attendee {@code i} to {@code group}, which weighs {@code weight}, offers the result as a
+   * solution and returns the slots left. Returns null if the branch should be pruned.
+   */
+  private TimeRangeList withAttendee(
+      TimeRangeList available, BitSet group, double weight, int i) {
+    if (cancelled) {
+      QueryStats.global().increment(QueryStats.Counter.BRANCHES_PRUNED);
+      return null;
+    }
+    if (deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos > 0) {
+      // Out of time, so prune everything that is left.
+      timedOut = true;
+      QueryStats.global().increment(QueryStats.Counter.BRANCHES_PRUNED);
+      return null;
+    }
+
+    int size = group.cardinality() + 1;
+    double childWeight = weight + weights[i];
+
+    // Even with everyone after i, this branch would weigh less than the best solution. The bound
+    // and the best weight are sums in different orders, so they are only compared up to the slack,
+    // and a branch that ties the best one is kept.
+    double bound = childWeight + remainingWeight[i + 1] + boundSlack;
+    if (bound < best.get().solution.optionalWeight()) {
+      QueryStats.global().increment(QueryStats.Counter.BRANCHES_PRUNED);
+      return null;
+    }
+
+    TimeRangeList childAvailable = available.copy();
+    childAvailable.intersect(optionalFreeTimes[i]);
+    childAvailable.removeShorterThan(duration);
+    QueryStats.global().increment(QueryStats.Counter.SUBSETS_EXPLORED);
+    if (childAvailable.isEmpty()) {
+      QueryStats.global().increment(QueryStats.Counter.BRANCHES_PRUNED);
+      return null;
+    }
+
+    BitSet childGroup = (BitSet) group.clone();
+    childGroup.set(i);
+    offer(new Candidate(new Solution(size, childWeight, childAvailable), childGroup));
+    return childAvailable;
+  }
+
+  private void offer(Candidate candidate) {
+    Candidate current = best.get();
+    while (candidate.isBetterThan(current) && !best.compareAndSet(current, candidate)) {
+      current = best.get();
+    }
+  }
+
+  private static final class Candidate {
+    private final Solution solution;
+    private final BitSet group;
+
+    Candidate(Solution solution, BitSet group) {
+      this.solution = solution;
+      this.group = group;
+    }
+
+    // Orders candidates the way the exhaustive search does, which keeps the first one it visits
+    // when two are equally good.
+    boolean isBetterThan(Candidate other) {
+      if (solution.optionalWeight() != other.solution.optionalWeight()) {
+        return solution.optionalWeight() > other.solution.optionalWeight();
+      }
+      if (solution.numOptionalAttendees() != other.solution.numOptionalAttendees()) {
+        return solution.numOptionalAttendees() > other.solution.numOptionalAttendees();
+      }
+      if (solution.numTimeRanges() != other.solution.numTimeRanges()) {
+        return solution.numTimeRanges() > other.solution.numTimeRanges();
+      }
+      return FindMeetingQuery.visitedFirst(group, other.group);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, least-recently-used cache of meeting query results. Requests are keyed by their
+ * attendees, optional attendees and duration, so the same request always hits no matter what order
+ * the attendees were listed in. Every entry is tied to a calendar version. As soon as a newer
+ * version is seen, every older entry is dropped. Safe to use from many threads.
+ */
+public final class QueryResultCache {
+  private final int capacity;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  // Guarded by {@code this}.
+  private final LinkedHashMap<Key, Collection<TimeRange>> entries;
+  private long version = Long.MIN_VALUE;
+
+  /**
+   * @param capacity The most results to keep. Must be positive.
+   */
+  public QueryResultCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<Key, Collection<TimeRange>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Collection<TimeRange>> eldest) {
+        if (size() > QueryResultCache.this.capacity) {
+          evictions.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached result of {@code request} against the calendar with the given version. On a
+   * miss, the result is computed with {@code compute} (without holding any lock) and a read-only
+   * copy of it is cached.
+   */
+  public Collection<TimeRange> get(
+      long calendarVersion, MeetingRequest request, Supplier<Collection<TimeRange>> compute) {
+    Key key = new Key(request);
+
+    synchronized (this) {
+      if (calendarVersion > version) {
+        // The calendar changed, so every result in the cache is stale.
+        entries.clear();
+        version = calendarVersion;
+      }
+
+      Collection<TimeRange> cached = calendarVersion == version ? entries.get(key) : null;
+      if (cached != null) {
+        hits.increment();
+        return cached;
+      }
+    }
+
+    misses.increment();
+    Collection<TimeRange> result = Collections.unmodifiableList(new ArrayList<>(compute.get()));
+
+    synchronized (this) {
+      // Results for an older calendar are still returned, but never cached.
+      if (calendarVersion == version) {
+        entries.put(key, result);
+      }
+    }
+    return result;
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("QueryResultCache: size=%d, hits=%d, misses=%d, evictions=%d", size(),
+        hitCount(), missCount(), evictionCount());
+  }
+
+  // The canonical form of a request. Attendee IDs are already sorted.
+  private static final class Key {
+    private final int[] attendees;
+    private final int[] optionalAttendees;
+    private final double[] optionalWeights;
+    // How many attendees of each kind are not in the dictionary. They are free all the time, so
+    // only their number can change the answer.
+    private final int numUnknownAttendees;
+    private final int numUnknownOptionalAttendees;
+    private final long duration;
+    private final int hashCode;
+
+    Key(MeetingRequest request) {
+      request = request.resolve();
+      this.attendees = request.getAttendeeIds();
+      this.optionalAttendees = request.getOptionalAttendeeIds();
+      this.optionalWeights = request.getOptionalAttendeeWeights();
+      this.numUnknownAttendees = request.getAttendees().size() - attendees.length;
+      this.numUnknownOptionalAttendees = request.getUnknownOptionalAttendees().size();
+      this.duration = request.getDuration();
+      int hash = Arrays.hashCode(attendees);
+      hash = 31 * hash + Arrays.hashCode(optionalAttendees);
+      hash = 31 * hash + Arrays.hashCode(optionalWeights);
+      hash = 31 * hash + numUnknownAttendees;
+      hash = 31 * hash + numUnknownOptionalAttendees;
+      this.hashCode = 31 * hash + Long.hashCode(duration);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return duration == key.duration
+          && numUnknownAttendees == key.numUnknownAttendees
+          && numUnknownOptionalAttendees == key.numUnknownOptionalAttendees
+          && Arrays.equals(attendees, key.attendees)
+          && Arrays.equals(optionalAttendees, key.optionalAttendees)
+          && Arrays.equals(optionalWeights, key.optionalWeights);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers for the scheduler's hot paths. Everything is a {@code LongAdder}, which
+ * spreads updates from different threads over separate cells, so recording costs about as much as
+ * an uncontended increment and never makes queries wait on each other.
+ *
+ * <p>Only coarse phases are timed. Operations that run many times per query, like
+ * {@code TimeRangeList.intersect}, are counted instead, since reading the clock would cost more
+ * than the operation itself.
+ */
+public final class QueryStats {
+  /**
+   * Parts of the work whose time is tracked.
+   */
+  public enum Phase {
+    // Building or updating an {@code AttendeeCalendarIndex}.
+    INDEX_BUILD,
+    // Collecting the free times of every optional attendee.
+    FREE_TIMES,
+    // Answering one {@code FindMeetingQuery.querySolution}, start to finish.
+    SOLVE
+  }
+
+  /**
+   * Things that are counted.
+   */
+  public enum Counter {
+    // Subsets of optional attendees whose common free times were computed.
+    SUBSETS_EXPLORED,
+    // Branches of the branch-and-bound search that were cut off.
+    BRANCHES_PRUNED,
+    // Candidate start times scored by a sweep.
+    SWEEP_STARTS,
+    RANGE_LISTS_ALLOCATED,
+    INTERSECTIONS,
+    // Queries turned away because the solver queue was full.
+    QUERIES_REJECTED,
+    QUERIES_TIMED_OUT
+  }
+
+  // Bucket i counts queries that took less than 2^i microseconds. The last one counts the rest.
+  private static final int LATENCY_BUCKETS = 24;
+
+  private static final QueryStats GLOBAL = new QueryStats();
+
+  private final LongAdder[] counters = newAdders(Counter.values().length);
+  private final LongAdder[] phaseCounts = newAdders(Phase.values().length);
+  private final LongAdder[] phaseNanos = newAdders(Phase.values().length);
+  private final LongAdder[] latencyBuckets = newAdders(LATENCY_BUCKETS);
+
+  /**
+   * Returns the stats every query in this process records to.
+   */
+  public static QueryStats global() {
+    return GLOBAL;
+  }
+
+  public void increment(Counter counter) {
+    counters[counter.ordinal()].increment();
+  }
+
+  public void add(Counter counter, long amount) {
+    counters[counter.ordinal()].add(amount);
+  }
+
+  public long get(Counter counter) {
+    return counters[counter.ordinal()].sum();
+  }
+
+  /**
+   * Records that {@code phase} ran once, for the time since {@code startNanos}, which came from
+   * {@code System.nanoTime()}. Solves are also added to the latency histogram.
+   */
+  public void recordPhase(Phase phase, long startNanos) {
+    long nanos = System.nanoTime() - startNanos;
+    phaseCounts[phase.ordinal()].increment();
+    phaseNanos[phase.ordinal()].add(nanos);
+    if (phase == Phase.SOLVE) {
+      latencyBuckets[latencyBucket(nanos)].increment();
+    }
+  }
+
+  public long getPhaseCount(Phase phase) {
+    return phaseCounts[phase.ordinal()].sum();
+  }
+
+  public long getPhaseNanos(Phase phase) {
+    return phaseNanos[phase.ordinal()].sum();
+  }
+
+  /**
+   * Returns how many solves fell into each latency bucket. Bucket i counts the ones that took less
+   * than {@code getBucketLimitMicros(i)} microseconds and at least the limit of bucket i - 1.
+   */
+  public long[] getLatencyHistogram() {
+    long[] histogram = new long[LATENCY_BUCKETS];
+    for (int i = 0; i < LATENCY_BUCKETS; i++) {
+      histogram[i] = latencyBuckets[i].sum();
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns the exclusive upper limit of latency bucket {@code i} in microseconds, or
+   * {@code Long.MAX_VALUE} for the last bucket.
+   */
+  public static long getBucketLimitMicros(int i) {
+    return i == LATENCY_BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+  }
+
+  /**
+   * Sets every counter, timer and bucket back to zero. Updates made while resetting may be lost.
+   */
+  public void reset() {
+    LongAdder[][] groups = {counters, phaseCounts, phaseNanos, latencyBuckets};
+    for (LongAdder[] adders : groups) {
+      for (LongAdder adder : adders) {
+        adder.reset();
+      }
+    }
+  }
+
+  static int latencyBucket(long nanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    // The number of bits in micros is the first bucket whose limit is above it.
+    int bucket = Long.SIZE - Long.numberOfLeadingZeros(micros);
+    return Math.min(bucket, LATENCY_BUCKETS - 1);
+  }
+
+  private static LongAdder[] newAdders(int count) {
+    LongAdder[] adders = new LongAdder[count];
+    for (int i = 0; i < count; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+}
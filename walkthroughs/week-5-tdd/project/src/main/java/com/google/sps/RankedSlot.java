@@ -0,0 +1,100 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * One recommended meeting time, along with the optional attendees who are free for all of it.
+ * Slots are read-only.
+ */
+public final class RankedSlot {
+  /**
+   * Orders slots from best to worst: the most optional attendee weight first, then the most
+   * optional attendees, then the highest preference, then the earliest start.
+   */
+  public static final Comparator<RankedSlot> BEST_FIRST =
+      Comparator.comparingDouble(RankedSlot::getOptionalWeight).reversed()
+          .thenComparing(Comparator.comparingInt(RankedSlot::getNumOptionalAttendees).reversed())
+          .thenComparing(Comparator.comparingDouble(RankedSlot::getPreference).reversed())
+          .thenComparing(slot -> slot.getWhen(), TimeRange.ORDER_BY_START);
+
+  private final TimeRange when;
+  private final int numOptionalAttendees;
+  private final double optionalWeight;
+  // Only filled in for the slots that are returned.
+  private final Collection<String> optionalAttendees;
+  private final double preference;
+
+  RankedSlot(TimeRange when, int numOptionalAttendees, double optionalWeight, double preference) {
+    this(when, numOptionalAttendees, optionalWeight, null, preference);
+  }
+
+  RankedSlot(TimeRange when, Collection<String> optionalAttendees, double preference) {
+    this(when, optionalAttendees, optionalAttendees.size(), preference);
+  }
+
+  RankedSlot(TimeRange when, Collection<String> optionalAttendees, double optionalWeight,
+      double preference) {
+    this(when, optionalAttendees.size(), optionalWeight, optionalAttendees, preference);
+  }
+
+  private RankedSlot(TimeRange when, int numOptionalAttendees, double optionalWeight,
+      Collection<String> optionalAttendees, double preference) {
+    this.when = when;
+    this.numOptionalAttendees = numOptionalAttendees;
+    this.optionalWeight = optionalWeight;
+    this.optionalAttendees = optionalAttendees;
+    this.preference = preference;
+  }
+
+  /**
+   * Returns when the meeting would take place. It lasts exactly as long as requested.
+   */
+  public TimeRange getWhen() {
+    return when;
+  }
+
+  public int getNumOptionalAttendees() {
+    return numOptionalAttendees;
+  }
+
+  /**
+   * Returns the total weight of the optional attendees who are free for the whole slot.
+   */
+  public double getOptionalWeight() {
+    return optionalWeight;
+  }
+
+  /**
+   * Returns a read-only set of the optional attendees who are free for the whole slot.
+   */
+  public Collection<String> getOptionalAttendees() {
+    return optionalAttendees;
+  }
+
+  /**
+   * Returns the preference weight given to this slot by the caller. Zero if none was given.
+   */
+  public double getPreference() {
+    return preference;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s with %s", when, optionalAttendees);
+  }
+}
@@ -0,0 +1,245 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A series of events that repeats on a rule, like a daily standup or a meeting every other
+ * Tuesday and Thursday. The series is stored as its rule, not as its occurrences, and only the
+ * occurrences inside a window are ever created, so a series costs the same no matter how long it
+ * runs. Recurring events are read-only; {@code every}, {@code until} and {@code except} return
+ * changed copies.
+ *
+ * <p>Times are in minutes from a shared epoch, as for {@code Event}. For weekdays, day zero of the
+ * epoch is taken to be a Thursday, as it is for the Unix epoch, and weeks start on Monday.
+ */
+public final class RecurringEvent {
+  private static final int MINUTES_PER_DAY = 24 * 60;
+  private static final int DAYS_PER_WEEK = 7;
+  private static final DayOfWeek EPOCH_DAY_OF_WEEK = DayOfWeek.THURSDAY;
+
+  /**
+   * How often the series repeats.
+   */
+  public enum Frequency {
+    // Every {@code interval} days.
+    DAILY,
+    // On the chosen days of every {@code interval}th week.
+    WEEKLY
+  }
+
+  private final String title;
+  private final TimeRange first;
+  private final AttendeeSet attendees;
+  private final Frequency frequency;
+  private final int interval;
+  // Bit {@code DayOfWeek.ordinal()} is set for every day a weekly series falls on.
+  private final int daysOfWeek;
+  // No occurrence starts at or after this minute.
+  private final int until;
+  // The sorted starts of the occurrences that were cancelled.
+  private final int[] exceptions;
+
+  private RecurringEvent(String title, TimeRange first, AttendeeSet attendees, Frequency frequency,
+      int interval, int daysOfWeek, int until, int[] exceptions) {
+    this.title = title;
+    this.first = first;
+    this.attendees = attendees;
+    this.frequency = frequency;
+    this.interval = interval;
+    this.daysOfWeek = daysOfWeek;
+    this.until = until;
+    this.exceptions = exceptions;
+  }
+
+  /**
+   * Creates a series that takes place every day, starting with {@code first}.
+   *
+   * @param title The human-readable name for every occurrence. Must be non-null.
+   * @param first The first occurrence. Later ones are at the same time of day. Must be non-null.
+   * @param attendees The people attending every occurrence. Must be non-null.
+   */
+  public static RecurringEvent daily(String title, TimeRange first, Collection<String> attendees) {
+    return create(title, first, attendees, Frequency.DAILY, 0);
+  }
+
+  /**
+   * Creates a series that takes place every week on {@code days}, starting on the day of
+   * {@code first}. Without any days, it takes place on the weekday of {@code first}.
+   */
+  public static RecurringEvent weekly(
+      String title, TimeRange first, Collection<String> attendees, Set<DayOfWeek> days) {
+    if (days == null) {
+      throw new IllegalArgumentException("days cannot be null. Use empty set instead.");
+    }
+    int daysOfWeek = 0;
+    for (DayOfWeek day : days) {
+      daysOfWeek |= 1 << day.ordinal();
+    }
+    return create(title, first, attendees, Frequency.WEEKLY, daysOfWeek);
+  }
+
+  private static RecurringEvent create(String title, TimeRange first,
+      Collection<String> attendees, Frequency frequency, int daysOfWeek) {
+    if (title == null) {
+      throw new IllegalArgumentException("title cannot be null");
+    }
+
+    if (first == null) {
+      throw new IllegalArgumentException("first cannot be null");
+    }
+
+    if (attendees == null) {
+      throw new IllegalArgumentException("attendees cannot be null. Use empty array instead.");
+    }
+
+    if (daysOfWeek == 0) {
+      daysOfWeek = 1 << dayOfWeek(day(first.start())).ordinal();
+    }
+    return new RecurringEvent(title, first, AttendeeSet.of(attendees), frequency, 1, daysOfWeek,
+        Integer.MAX_VALUE, new int[0]);
+  }
+
+  /**
+   * Returns a copy of this series that repeats every {@code interval} days or weeks instead.
+   */
+  public RecurringEvent every(int interval) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("interval must be positive");
+    }
+    return new RecurringEvent(
+        title, first, attendees, frequency, interval, daysOfWeek, until, exceptions);
+  }
+
+  /**
+   * Returns a copy of this series without the occurrences that start at or after {@code minute}.
+   */
+  public RecurringEvent until(int minute) {
+    return new RecurringEvent(
+        title, first, attendees, frequency, interval, daysOfWeek, minute, exceptions);
+  }
+
+  /**
+   * Returns a copy of this series without the occurrence that starts at {@code occurrenceStart}.
+   * Minutes that are not the start of an occurrence are ignored.
+   */
+  public RecurringEvent except(int occurrenceStart) {
+    int position = Arrays.binarySearch(exceptions, occurrenceStart);
+    if (position >= 0) {
+      return this;
+    }
+    int insertAt = -position - 1;
+    int[] newExceptions = new int[exceptions.length + 1];
+    System.arraycopy(exceptions, 0, newExceptions, 0, insertAt);
+    newExceptions[insertAt] = occurrenceStart;
+    System.arraycopy(
+        exceptions, insertAt, newExceptions, insertAt + 1, exceptions.length - insertAt);
+    return new RecurringEvent(
+        title, first, attendees, frequency, interval, daysOfWeek, until, newExceptions);
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  /**
+   * Returns the first occurrence, which sets the time of day and duration of all of them.
+   */
+  public TimeRange getFirst() {
+    return first;
+  }
+
+  /**
+   * Returns a read-only set of the attendees of every occurrence.
+   */
+  public Set<String> getAttendees() {
+    return attendees;
+  }
+
+  int[] getAttendeeIds() {
+    return attendees.ids();
+  }
+
+  /**
+   * Returns an {@code Event} for each occurrence that overlaps {@code window}, in order. Only the
+   * days inside the window are looked at.
+   */
+  public List<Event> expand(TimeRange window) {
+    List<TimeRange> occurrences = new ArrayList<>();
+    addOccurrences(window.start(), window.end(), occurrences);
+
+    List<Event> events = new ArrayList<>(occurrences.size());
+    for (TimeRange when : occurrences) {
+      events.add(new Event(title, when, attendees));
+    }
+    return events;
+  }
+
+  /**
+   * Adds the time of each occurrence that overlaps [from, to) to {@code occurrences}, in order.
+   */
+  void addOccurrences(int from, int to, List<TimeRange> occurrences) {
+    int firstDay = day(first.start());
+    int timeOfDay = first.start() - firstDay * MINUTES_PER_DAY;
+    int duration = first.duration();
+
+    // The first day whose occurrence ends after {@code from} and the last one that starts before
+    // {@code to}. Occurrences may run past midnight, so both are measured from the time of day.
+    int fromDay = Math.max(firstDay, day(from - timeOfDay - duration) + 1);
+    int toDay = day(to - timeOfDay - 1);
+    for (int day = fromDay; day <= toDay; day++) {
+      int start = day * MINUTES_PER_DAY + timeOfDay;
+      if (start >= until) {
+        break;
+      }
+      if (fallsOn(day, firstDay) && Arrays.binarySearch(exceptions, start) < 0) {
+        occurrences.add(TimeRange.fromStartDuration(start, duration));
+      }
+    }
+  }
+
+  private boolean fallsOn(int day, int firstDay) {
+    if (frequency == Frequency.DAILY) {
+      return (day - firstDay) % interval == 0;
+    }
+    return (daysOfWeek & (1 << dayOfWeek(day).ordinal())) != 0
+        && (week(day) - week(firstDay)) % interval == 0;
+  }
+
+  private static int day(int minute) {
+    return Math.floorDiv(minute, MINUTES_PER_DAY);
+  }
+
+  private static DayOfWeek dayOfWeek(int day) {
+    return EPOCH_DAY_OF_WEEK.plus(Math.floorMod(day, DAYS_PER_WEEK));
+  }
+
+  // Counts weeks from the Monday on or before day zero.
+  private static int week(int day) {
+    return Math.floorDiv(day + EPOCH_DAY_OF_WEEK.ordinal(), DAYS_PER_WEEK);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: every %d %s from %s", title, interval,
+        frequency == Frequency.DAILY ? "days" : "weeks", first);
+  }
+}
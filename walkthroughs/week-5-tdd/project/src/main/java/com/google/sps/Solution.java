@@ -1,29 +1,70 @@
 package com.google.sps;
 
-import java.util.ArrayList;
 import java.util.Collection;
 
 public class Solution {
 
     private int numOptionalAttendees;
-    private Collection<TimeRange> solution;
+    // The total weight of the optional attendees. The same as their number unless some of them
+    // were given a weight.
+    private double optionalWeight;
+    private TimeRangeList solution;
     private boolean isValidSolution;
+    // False if the search stopped at its deadline before it could rule out better solutions.
+    private boolean provenOptimal = true;
 
     public Solution(int numOptionalAttendees, Collection<TimeRange> solution) {
+      this(numOptionalAttendees, TimeRangeList.of(solution));
+    }
+
+    Solution(int numOptionalAttendees, TimeRangeList solution) {
+      this(numOptionalAttendees, numOptionalAttendees, solution);
+    }
+
+    Solution(int numOptionalAttendees, double optionalWeight, TimeRangeList solution) {
       this.numOptionalAttendees = numOptionalAttendees;
+      this.optionalWeight = optionalWeight;
       this.solution = solution;
       // If the solution list is empty, it couldn't be solved
       this.isValidSolution = solution.size() != 0;
     }
 
     public Collection<TimeRange> solution() {
-      return new ArrayList<TimeRange>(this.solution);
+      return this.solution.toTimeRanges();
+    }
+
+    public int numTimeRanges() {
+      return this.solution.size();
     }
 
     public int numOptionalAttendees() {
       return this.numOptionalAttendees;
     }
 
+    public double optionalWeight() {
+      return this.optionalWeight;
+    }
+
+    public boolean isValid() {
+      return this.isValidSolution;
+    }
+
+    public boolean isProvenOptimal() {
+      return this.provenOptimal;
+    }
+
+    void setProvenOptimal(boolean provenOptimal) {
+      this.provenOptimal = provenOptimal;
+    }
+
+    // Returns this solution with more optional attendees who are free all the time.
+    Solution withAttendeesAlwaysFree(int numAttendees, double weight) {
+      Solution sol =
+          new Solution(numOptionalAttendees + numAttendees, optionalWeight + weight, solution);
+      sol.setProvenOptimal(provenOptimal);
+      return sol;
+    }
+
     public static Solution betterSolution(Solution one, Solution two) {
       if (one.isBetterThan(two)) {
         return one;
@@ -50,8 +91,11 @@ public class Solution {
       }
 
       // if we got here they are both valid solutions. Return whichever
-      // has more attendees.  if they have the same, return whichever has more times
-      if (this.numOptionalAttendees != other.numOptionalAttendees) {
+      // has more attendee weight, then more attendees.  if they have the same,
+      // return whichever has more times
+      if (this.optionalWeight != other.optionalWeight) {
+        return this.optionalWeight > other.optionalWeight;
+      } else if (this.numOptionalAttendees != other.numOptionalAttendees) {
         return this.numOptionalAttendees > other.numOptionalAttendees;
       } else {
         return this.solution.size() >= other.solution.size();
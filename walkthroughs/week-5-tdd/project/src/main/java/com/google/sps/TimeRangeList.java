@@ -0,0 +1,309 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A sorted list of time ranges packed into parallel {@code int} arrays of starts and ends. The
+ * scheduler works on these lists internally so it does not need a {@code TimeRange} object per
+ * range. Operations change the list in place and reuse its arrays, so once a list has grown large
+ * enough they do not allocate at all. {@code TimeRange} objects are only created by
+ * {@code toTimeRanges()}.
+ */
+public final class TimeRangeList {
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private int[] starts;
+  private int[] ends;
+  private int size;
+
+  // Spare arrays that operations write into before swapping them with {@code starts}/{@code ends}.
+  private int[] spareStarts;
+  private int[] spareEnds;
+
+  public TimeRangeList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TimeRangeList(int capacity) {
+    this.starts = new int[Math.max(capacity, 1)];
+    this.ends = new int[Math.max(capacity, 1)];
+    QueryStats.global().increment(QueryStats.Counter.RANGE_LISTS_ALLOCATED);
+  }
+
+  /**
+   * Creates a list holding the given ranges. The ranges must be sorted by start.
+   */
+  public static TimeRangeList of(Collection<TimeRange> ranges) {
+    TimeRangeList list = new TimeRangeList(ranges.size());
+    for (TimeRange range : ranges) {
+      list.add(range.start(), range.end());
+    }
+    return list;
+  }
+
+  /**
+   * Creates a list holding only {@code TimeRange.WHOLE_DAY}.
+   */
+  public static TimeRangeList wholeDay() {
+    TimeRangeList list = new TimeRangeList(1);
+    list.add(TimeRange.WHOLE_DAY.start(), TimeRange.WHOLE_DAY.end());
+    return list;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the start of the range at {@code index}.
+   */
+  public int start(int index) {
+    return starts[index];
+  }
+
+  /**
+   * Returns the exclusive end of the range at {@code index}.
+   */
+  public int end(int index) {
+    return ends[index];
+  }
+
+  /**
+   * Appends the range [start, end). Ranges must be added in order of their start.
+   */
+  public void add(int start, int end) {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    size++;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Replaces the contents of this list with the contents of {@code other}.
+   */
+  public void copyFrom(TimeRangeList other) {
+    if (starts.length < other.size) {
+      starts = new int[other.size];
+      ends = new int[other.size];
+    }
+    System.arraycopy(other.starts, 0, starts, 0, other.size);
+    System.arraycopy(other.ends, 0, ends, 0, other.size);
+    size = other.size;
+  }
+
+  public TimeRangeList copy() {
+    TimeRangeList copy = new TimeRangeList(size);
+    copy.copyFrom(this);
+    return copy;
+  }
+
+  /**
+   * Keeps only the parts of this list that overlap with {@code other}. Both lists are walked once
+   * with two pointers.
+   */
+  public void intersect(TimeRangeList other) {
+    QueryStats.global().increment(QueryStats.Counter.INTERSECTIONS);
+    ensureSpare(size + other.size);
+
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < size && j < other.size) {
+      int oneStart = starts[i];
+      int oneEnd = ends[i];
+      int twoStart = other.starts[j];
+      int twoEnd = other.ends[j];
+
+      if (overlaps(oneStart, oneEnd, twoStart, twoEnd)) {
+        int start = Math.max(oneStart, twoStart);
+        // Keep at most one range per start time.
+        if (count == 0 || spareStarts[count - 1] != start) {
+          spareStarts[count] = start;
+          spareEnds[count] = Math.min(oneEnd, twoEnd);
+          count++;
+        }
+        if (oneEnd < twoEnd) {
+          i++;
+        } else {
+          j++;
+        }
+      } else {
+        if (oneStart < twoStart) {
+          i++;
+        } else {
+          j++;
+        }
+      }
+    }
+
+    swapSpare(count);
+  }
+
+  /**
+   * Treats this list as sorted busy times that do not overlap and replaces it with the free times
+   * between them over the whole day.
+   */
+  public void complement() {
+    complement(TimeRange.WHOLE_DAY.start(), TimeRange.WHOLE_DAY.end());
+  }
+
+  /**
+   * Treats this list as sorted busy times that do not overlap and replaces it with the free times
+   * between them in [from, to).
+   */
+  public void complement(int from, int to) {
+    ensureSpare(countBetween(from, to) + 1);
+    swapSpare(writeGaps(from, to, spareStarts, spareEnds));
+  }
+
+  /**
+   * Returns the free times in [from, to) between the busy times in this list, which is left
+   * unchanged. Busy times outside of [from, to) are skipped with a binary search, so the cost
+   * depends on the number of ranges inside it rather than on the size of the list.
+   */
+  public TimeRangeList gaps(int from, int to) {
+    TimeRangeList gaps = new TimeRangeList(countBetween(from, to) + 1);
+    gaps.size = writeGaps(from, to, gaps.starts, gaps.ends);
+    return gaps;
+  }
+
+  /**
+   * Returns the index of the first range that ends after {@code time}, or {@code size()} if there
+   * is none. The ranges must not overlap, so that their ends are sorted as well.
+   */
+  public int firstEndingAfter(int time) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (ends[mid] <= time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Removes every range shorter than {@code minDuration} minutes.
+   */
+  public void removeShorterThan(long minDuration) {
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (ends[i] - starts[i] >= minDuration) {
+        starts[count] = starts[i];
+        ends[count] = ends[i];
+        count++;
+      }
+    }
+    size = count;
+  }
+
+  /**
+   * Creates a {@code TimeRange} for every range in the list.
+   */
+  public List<TimeRange> toTimeRanges() {
+    List<TimeRange> ranges = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      ranges.add(TimeRange.fromStartEnd(starts[i], ends[i], false));
+    }
+    return ranges;
+  }
+
+  @Override
+  public String toString() {
+    return toTimeRanges().toString();
+  }
+
+  // Same as {@code TimeRange.overlaps}, without needing the objects.
+  private static boolean overlaps(int oneStart, int oneEnd, int twoStart, int twoEnd) {
+    return contains(oneStart, oneEnd, twoStart) || contains(twoStart, twoEnd, oneStart);
+  }
+
+  private static boolean contains(int start, int end, int point) {
+    return start < end && start <= point && point < end;
+  }
+
+  // Returns how many ranges overlap [from, to), counting empty ranges inside it.
+  private int countBetween(int from, int to) {
+    int first = firstEndingAfter(from);
+    int low = first;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (starts[mid] < to) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low - first;
+  }
+
+  // Writes the gaps between the ranges in [from, to) to the given arrays. Returns how many.
+  private int writeGaps(int from, int to, int[] gapStarts, int[] gapEnds) {
+    int count = 0;
+    int startTime = from;
+    for (int i = firstEndingAfter(from); i < size && starts[i] < to; i++) {
+      if (startTime <= starts[i]) {
+        gapStarts[count] = startTime;
+        gapEnds[count] = starts[i];
+        count++;
+      }
+      startTime = Math.max(startTime, ends[i]);
+    }
+
+    if (startTime < to) {
+      gapStarts[count] = startTime;
+      gapEnds[count] = to;
+      count++;
+    }
+    return count;
+  }
+
+  private void ensureSpare(int capacity) {
+    if (spareStarts == null || spareStarts.length < capacity) {
+      spareStarts = new int[capacity];
+      spareEnds = new int[capacity];
+    }
+  }
+
+  private void swapSpare(int count) {
+    int[] oldStarts = starts;
+    int[] oldEnds = ends;
+    starts = spareStarts;
+    ends = spareEnds;
+    spareStarts = oldStarts;
+    spareEnds = oldEnds;
+    size = count;
+  }
+}
@@ -0,0 +1,59 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.AvailabilityHeatmap;
+import com.google.sps.JsonAdapters;
+import com.google.sps.MeetingRequest;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns how many of the requested mandatory and optional attendees are free at each minute of
+ * the day, to show why a query picked the times it did.
+ */
+@WebServlet("/availability-heatmap")
+public class AvailabilityHeatmapServlet extends HttpServlet {
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Gson gson = JsonAdapters.gson();
+
+    // Convert the JSON to an instance of MeetingRequest.
+    MeetingRequest meetingRequest;
+    try {
+      meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+    } catch (JsonParseException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+    if (meetingRequest == null) {
+      // An empty body parses to null.
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a meeting request");
+      return;
+    }
+
+    AvailabilityHeatmap heatmap =
+        AvailabilityHeatmap.of(QueryServlet.STORE.snapshot().getIndex(), meetingRequest);
+
+    // Send the JSON back as the response
+    response.setContentType("application/json");
+    gson.toJson(heatmap, response.getWriter());
+  }
+}
@@ -14,9 +14,12 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.Events;
-import com.google.gson.Gson;
+import com.google.sps.EventStore;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -24,13 +27,52 @@ import javax.servlet.http.HttpServletResponse;
 
 @WebServlet("/get-events")
 public class GetEventsServlet extends HttpServlet {
+  // Every open scheduler tab polls this, so each snapshot of the events is serialized only once.
+  // The first request to see a new snapshot builds its payload and the others wait for it, so a
+  // write does not make every poller serialize, gzip and hash the whole calendar on its own.
+  private final AtomicReference<CachedPayload> events = new AtomicReference<>();
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
-    String jsonResponse = gson.toJson(Events.events);
+    EventStore.Snapshot snapshot = QueryServlet.STORE.snapshot();
+    CachedPayload cached = events.get();
+    while (cached == null || cached.version < snapshot.getVersion()) {
+      CachedPayload fresh = new CachedPayload(snapshot);
+      if (events.compareAndSet(cached, fresh)) {
+        fresh.payload.run();
+        cached = fresh;
+      } else {
+        cached = events.get();
+      }
+    }
+
+    JsonPayload payload;
+    try {
+      payload = cached.payload.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the events");
+    } catch (ExecutionException e) {
+      // Let the next request try again rather than keep the failure for this version.
+      events.compareAndSet(cached, null);
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+    payload.writeTo(request, response);
+  }
+
+  private static final class CachedPayload {
+    private final long version;
+    private final FutureTask<JsonPayload> payload;
 
-    // Send the JSON back as the response
-    response.setContentType("application/json");
-    response.getWriter().println(jsonResponse);
+    CachedPayload(EventStore.Snapshot snapshot) {
+      this.version = snapshot.getVersion();
+      this.payload = new FutureTask<>(() -> JsonPayload.of(snapshot.getEvents()));
+    }
   }
 }
@@ -0,0 +1,55 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.EventIngester;
+import com.google.sps.JsonAdapters;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Loads events in bulk from a newline-delimited JSON body, one event per line, into the store
+ * used by {@code /query}. The body is streamed rather than read whole, so calendar exports of any
+ * size can be sent. Responds with how many events were added and how fast.
+ */
+@WebServlet("/events/ingest")
+public class IngestEventsServlet extends HttpServlet {
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    EventIngester.Result result;
+    try {
+      result = new EventIngester(QueryServlet.STORE).ingest(request.getReader());
+    } catch (IllegalArgumentException e) {
+      // The events before the bad record were already added.
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+    log(result.toString());
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("events", result.getEvents());
+    report.put("batches", result.getBatches());
+    report.put("millis", result.getMillis());
+    report.put("events_per_second", result.getEventsPerSecond());
+
+    response.setContentType("application/json");
+    JsonAdapters.gson().toJson(report, response.getWriter());
+  }
+}
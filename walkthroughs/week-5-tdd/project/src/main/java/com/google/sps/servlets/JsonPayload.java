@@ -0,0 +1,166 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.JsonAdapters;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A JSON response that is encoded once and then served as is. The body is kept both as plain
+ * UTF-8 bytes and gzipped, each with a strong ETag, so a request costs a header check and a copy.
+ */
+final class JsonPayload {
+  private final byte[] body;
+  private final byte[] gzippedBody;
+  private final String etag;
+  private final String gzippedEtag;
+
+  private JsonPayload(byte[] body) {
+    this.body = body;
+    this.gzippedBody = gzip(body);
+
+    // Each encoding is a different representation, so they need different strong ETags.
+    String hash = sha256(body);
+    this.etag = '"' + hash + '"';
+    this.gzippedEtag = "\"" + hash + "-gzip\"";
+  }
+
+  /**
+   * Encodes {@code value} as JSON. It is written as UTF-8 bytes as it is serialized, without
+   * building a {@code String} of the whole body first.
+   */
+  static JsonPayload of(Object value) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+      JsonAdapters.gson().toJson(value, writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new JsonPayload(out.toByteArray());
+  }
+
+  /**
+   * Sends the payload, or 304 Not Modified if the client already has the current version.
+   */
+  void writeTo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    boolean useGzip = acceptsGzip(request) && gzippedBody.length < body.length;
+    String currentEtag = useGzip ? gzippedEtag : etag;
+
+    response.setHeader("ETag", currentEtag);
+    response.setHeader("Vary", "Accept-Encoding");
+    if (matches(request.getHeader("If-None-Match"), currentEtag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    byte[] bytes = useGzip ? gzippedBody : body;
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    if (useGzip) {
+      response.setHeader("Content-Encoding", "gzip");
+    }
+    response.setContentLength(bytes.length);
+    response.getOutputStream().write(bytes);
+  }
+
+  // Checks an Accept-Encoding header, a comma separated list of codings, each with an optional
+  // q-value. A q-value of 0 refuses the coding, and * stands for every coding not listed.
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    if (acceptEncoding == null) {
+      return false;
+    }
+    Double gzipQuality = null;
+    Double anyQuality = null;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim().toLowerCase();
+      double quality = 1;
+      for (int i = 1; i < parts.length; i++) {
+        String param = parts[i].trim();
+        if (param.startsWith("q=") || param.startsWith("Q=")) {
+          quality = parseQuality(param.substring(2));
+        }
+      }
+      if (name.equals("gzip") || name.equals("x-gzip")) {
+        gzipQuality = quality;
+      } else if (name.equals("*")) {
+        anyQuality = quality;
+      }
+    }
+    Double quality = gzipQuality != null ? gzipQuality : anyQuality;
+    return quality != null && quality > 0;
+  }
+
+  // A q-value that cannot be read is taken as 0, so a malformed header never gets gzip.
+  private static double parseQuality(String value) {
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  // Checks an If-None-Match header, which is either * or a comma separated list of ETags.
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      // A weak comparison is what If-None-Match asks for, so ignore any W/ prefix.
+      if (candidate.startsWith("W/")) {
+        candidate = candidate.substring(2);
+      }
+      if (candidate.equals("*") || candidate.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  private static String sha256(byte[] bytes) {
+    try {
+      StringBuilder hex = new StringBuilder();
+      for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -14,38 +14,300 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.AttendeeCalendarIndex;
+import com.google.sps.EventStore;
 import com.google.sps.Events;
 import com.google.sps.FindMeetingQuery;
+import com.google.sps.JsonAdapters;
+import com.google.sps.MappedCalendar;
 import com.google.sps.MeetingRequest;
+import com.google.sps.QueryResultCache;
+import com.google.sps.QueryStats;
+import com.google.sps.Solution;
 import com.google.sps.TimeRange;
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-@WebServlet("/query")
+/**
+ * Answers meeting requests. The container thread only parses the request; the solving happens on
+ * a bounded pool, so slow searches cannot use up the container's threads. Requests that would
+ * wait in a full queue, or that run past their timeout, get 503 with {@code Retry-After} instead.
+ *
+ * <p>Searches with a deadline are the only ones that can run long, so they get a small pool of
+ * their own and never hold up the threads answering everything else. The search itself forks onto
+ * a fork-join pool of the same size, so they cannot take more cores than that either.
+ *
+ * <p>A query that times out is cancelled, but only the search with a deadline checks for that and
+ * stops. The other solvers never look at the interrupt, so a timed out query of theirs keeps its
+ * pool thread until it finishes; they run in milliseconds, and its answer is thrown away.
+ */
+@WebServlet(urlPatterns = "/query", asyncSupported = true)
 public class QueryServlet extends HttpServlet {
+  // The calendar every servlet reads from. Each request queries one snapshot of it, so a write
+  // that lands halfway through a query does not change its answer.
+  static final EventStore STORE = createStore();
+
+  // The UI re-queries whenever a form field changes, so the same requests come in again and again.
+  private static final int CACHE_CAPACITY = 1024;
+  static final QueryResultCache CACHE = new QueryResultCache(CACHE_CAPACITY);
+
+  private static final int DEFAULT_TOP_K = 5;
+  // Larger values of k are cut down to this. Nobody reads past the first few slots.
+  private static final int MAX_TOP_K = 100;
+
+  private static final int QUEUE_CAPACITY = 64;
+  private static final long TIMEOUT_MILLIS = 10_000;
+  // Longer deadlines are cut down to this, so a search never holds a core for more than twice the
+  // usual timeout.
+  private static final long MAX_DEADLINE_MILLIS = TIMEOUT_MILLIS;
+  private static final String RETRY_AFTER_SECONDS = "1";
+
+  private ExecutorService solverPool;
+  private ExecutorService searchPool;
+  private ForkJoinPool searchWorkers;
+
   @Override
-  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
+  public void init() {
+    int numThreads = Runtime.getRuntime().availableProcessors();
+    int numSearchThreads = Math.max(numThreads / 4, 1);
+    solverPool = newBoundedPool(numThreads);
+    searchPool = newBoundedPool(numSearchThreads);
+    searchWorkers = new ForkJoinPool(numSearchThreads);
+  }
 
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     // Convert the JSON to an instance of MeetingRequest.
-    MeetingRequest meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+    MeetingRequest meetingRequest;
+    try {
+      meetingRequest = JsonAdapters.gson().fromJson(request.getReader(), MeetingRequest.class);
+    } catch (JsonParseException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+    if (meetingRequest == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a meeting request");
+      return;
+    }
+    AttendeeCalendarIndex index = STORE.snapshot().getIndex();
+
+    // Check the parameters here so bad requests never reach the pool.
+    Callable<Answer> solve;
+    ExecutorService pool = solverPool;
+    long timeoutMillis = TIMEOUT_MILLIS;
+    String mode = request.getParameter("mode");
+    if ("earliest".equals(mode)) {
+      // Only the first slot that works, starting from the given minute of the day.
+      Integer fromMinute = parseInt(request.getParameter("from"), TimeRange.START_OF_DAY);
+      if (fromMinute == null
+          || fromMinute < TimeRange.START_OF_DAY
+          || fromMinute >= TimeRange.WHOLE_DAY.end()) {
+        response.sendError(
+            HttpServletResponse.SC_BAD_REQUEST, "from must be a minute of the day");
+        return;
+      }
+      solve = () -> {
+        List<TimeRange> earliest = new ArrayList<>();
+        new FindMeetingQuery()
+            .findEarliest(index, meetingRequest, fromMinute)
+            .ifPresent(earliest::add);
+        return new Answer(earliest);
+      };
+    } else if ("top".equals(mode)) {
+      // The best few slots, each with the optional attendees who can make it.
+      Integer k = parseInt(request.getParameter("k"), DEFAULT_TOP_K);
+      if (k == null || k <= 0) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "k must be a positive number");
+        return;
+      }
+      int topK = Math.min(k, MAX_TOP_K);
+      solve = () -> new Answer(new FindMeetingQuery().queryTopK(index, meetingRequest, topK));
+    } else if (meetingRequest.getDeadlineMillis() > 0) {
+      // Answers found under a deadline may not be the best ones, so they are not cached.
+      meetingRequest.setDeadlineMillis(
+          Math.min(meetingRequest.getDeadlineMillis(), MAX_DEADLINE_MILLIS));
+      pool = searchPool;
+      timeoutMillis += meetingRequest.getDeadlineMillis();
+      solve = () -> {
+        Solution solution = new FindMeetingQuery(searchWorkers).querySolution(
+            index, meetingRequest, TimeRange.WHOLE_DAY, FindMeetingQuery.Mode.ANYTIME);
+        Answer answer = new Answer(solution.solution());
+        answer.provenOptimal = solution.isProvenOptimal();
+        return answer;
+      };
+    } else {
+      // Find the possible meeting times, unless the same request was answered already.
+      solve = () -> new Answer(CACHE.get(index.getVersion(), meetingRequest,
+          () -> new FindMeetingQuery().query(index, meetingRequest)));
+    }
+
+    AsyncContext async = request.startAsync();
+    async.setTimeout(timeoutMillis);
+    PendingQuery pending = new PendingQuery(async);
+    async.addListener(pending);
+    try {
+      pending.future = pool.submit(() -> {
+        try {
+          pending.finish(solve.call());
+        } catch (Throwable e) {
+          // The future keeps whatever is thrown here and nobody reads it, so answer the request
+          // before anything else. Errors still go on up once it is answered.
+          log("Query failed", e);
+          pending.fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.toString());
+          if (e instanceof Error) {
+            throw (Error) e;
+          }
+        }
+        return null;
+      });
+    } catch (RejectedExecutionException e) {
+      QueryStats.global().increment(QueryStats.Counter.QUERIES_REJECTED);
+      pending.fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many queries, try again later");
+    }
+  }
+
+  // Starts from the calendar file named by the calendar.snapshot system property, if there is one.
+  // The file is mapped rather than parsed, so startup does not depend on how big it is.
+  private static EventStore createStore() {
+    String snapshot = System.getProperty("calendar.snapshot");
+    if (snapshot == null) {
+      return new EventStore(Arrays.asList(Events.events));
+    }
+    try {
+      return MappedCalendar.open(Paths.get(snapshot)).toEventStore();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // A fixed number of threads with a short queue. Submitting to a full queue throws right away.
+  private static ExecutorService newBoundedPool(int numThreads) {
+    return new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY), new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  // Returns {@code defaultValue} if no value is given, or null if it is not a number.
+  private static Integer parseInt(String value, int defaultValue) {
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void destroy() {
+    solverPool.shutdownNow();
+    searchPool.shutdownNow();
+    searchWorkers.shutdownNow();
+    log(CACHE.toString());
+  }
+
+  // What a solver sends back. {@code provenOptimal} is only set for searches with a deadline.
+  private static final class Answer {
+    private final Object body;
+    private Boolean provenOptimal;
+
+    Answer(Object body) {
+      this.body = body;
+    }
+  }
+
+  /**
+   * One request waiting for its answer. Whichever comes first of the answer, the timeout or an
+   * error writes the response; the others find it already done.
+   */
+  private final class PendingQuery implements AsyncListener {
+    private final AsyncContext async;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile Future<?> future;
+
+    PendingQuery(AsyncContext async) {
+      this.async = async;
+    }
+
+    void finish(Answer answer) throws IOException {
+      if (!done.compareAndSet(false, true)) {
+        return;
+      }
+      HttpServletResponse response = (HttpServletResponse) async.getResponse();
+      try {
+        if (answer.provenOptimal != null) {
+          response.setHeader("X-Proven-Optimal", String.valueOf(answer.provenOptimal));
+        }
+
+        // Convert the times to JSON straight into the response
+        response.setContentType("application/json");
+        JsonAdapters.gson().toJson(answer.body, response.getWriter());
+      } finally {
+        async.complete();
+      }
+    }
+
+    void fail(int status, String message) throws IOException {
+      if (!done.compareAndSet(false, true)) {
+        return;
+      }
+      HttpServletResponse response = (HttpServletResponse) async.getResponse();
+      try {
+        if (status == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+          response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+        }
+        response.sendError(status, message);
+      } finally {
+        async.complete();
+      }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) throws IOException {
+      QueryStats.global().increment(QueryStats.Counter.QUERIES_TIMED_OUT);
+      Future<?> running = future;
+      if (running != null) {
+        running.cancel(true);
+      }
+      fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The query took too long, try again later");
+    }
 
-    // Find the possible meeting times.
-    FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
-    Collection<TimeRange> answer =
-        findMeetingQuery.query(Arrays.asList(Events.events), meetingRequest);
+    @Override
+    public void onError(AsyncEvent event) throws IOException {
+      Future<?> running = future;
+      if (running != null) {
+        running.cancel(true);
+      }
+      log("Query failed", event.getThrowable());
+      // Mark the query done so the solver does not write to a response that is being torn down.
+      done.set(true);
+    }
 
-    // Convert the times to JSON
-    String jsonResponse = gson.toJson(answer);
+    @Override
+    public void onComplete(AsyncEvent event) {}
 
-    // Send the JSON back as the response
-    response.setContentType("application/json");
-    response.getWriter().println(jsonResponse);
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
   }
 }
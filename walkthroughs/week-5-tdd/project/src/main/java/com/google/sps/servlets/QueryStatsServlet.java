@@ -0,0 +1,86 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.JsonAdapters;
+import com.google.sps.QueryStats;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns the scheduler's counters, phase timers, latency histogram and result cache stats as
+ * JSON, to find slow request shapes without attaching a profiler.
+ */
+@WebServlet("/query-stats")
+public class QueryStatsServlet extends HttpServlet {
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    QueryStats stats = QueryStats.global();
+
+    Map<String, Long> counters = new LinkedHashMap<>();
+    for (QueryStats.Counter counter : QueryStats.Counter.values()) {
+      counters.put(name(counter), stats.get(counter));
+    }
+
+    Map<String, Map<String, Long>> phases = new LinkedHashMap<>();
+    for (QueryStats.Phase phase : QueryStats.Phase.values()) {
+      Map<String, Long> timer = new LinkedHashMap<>();
+      timer.put("count", stats.getPhaseCount(phase));
+      timer.put("total_micros", TimeUnit.NANOSECONDS.toMicros(stats.getPhaseNanos(phase)));
+      phases.put(name(phase), timer);
+    }
+
+    // Only the buckets that have something in them, each with its upper limit.
+    List<Map<String, Object>> histogram = new ArrayList<>();
+    long[] buckets = stats.getLatencyHistogram();
+    for (int i = 0; i < buckets.length; i++) {
+      if (buckets[i] > 0) {
+        Map<String, Object> bucket = new LinkedHashMap<>();
+        long limit = QueryStats.getBucketLimitMicros(i);
+        bucket.put("below_micros", limit == Long.MAX_VALUE ? "inf" : limit);
+        bucket.put("count", buckets[i]);
+        histogram.add(bucket);
+      }
+    }
+
+    Map<String, Long> cache = new LinkedHashMap<>();
+    cache.put("size", (long) QueryServlet.CACHE.size());
+    cache.put("hits", QueryServlet.CACHE.hitCount());
+    cache.put("misses", QueryServlet.CACHE.missCount());
+    cache.put("evictions", QueryServlet.CACHE.evictionCount());
+
+    Map<String, Object> json = new LinkedHashMap<>();
+    json.put("counters", counters);
+    json.put("phases", phases);
+    json.put("solve_latency", histogram);
+    json.put("cache", cache);
+
+    response.setContentType("application/json");
+    JsonAdapters.gson().toJson(json, response.getWriter());
+  }
+
+  private static String name(Enum<?> value) {
+    return value.name().toLowerCase(Locale.ROOT);
+  }
+}
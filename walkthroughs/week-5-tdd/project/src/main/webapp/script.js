@@ -36,6 +36,10 @@ function sendMeetingRequest() {
   queryServer(meetingRequest).then((timeRanges) => {
     updateResultsOnPage(timeRanges);
   });
+
+  getHeatmap(meetingRequest).then((heatmap) => {
+    drawHeatmap(document.getElementById('heatmap'), heatmap);
+  });
 }
 
 /**
@@ -73,6 +77,40 @@ function queryServer(meetingRequest) {
       });
 }
 
+/**
+ * Gets how many of the requested attendees are free at each minute of the day.
+ */
+function getHeatmap(meetingRequest) {
+  const json = JSON.stringify(meetingRequest);
+  return fetch('/availability-heatmap', {method: 'POST', body: json})
+      .then((response) => {
+        return response.json();
+      });
+}
+
+/**
+ * Draws one column per minute of the day. Minutes when a mandatory attendee is
+ * busy are grey. The others are a darker green the more optional attendees are
+ * free.
+ */
+function drawHeatmap(canvas, heatmap) {
+  const context = canvas.getContext('2d');
+  const minutes = heatmap.mandatoryFree.length;
+  const width = canvas.width / minutes;
+
+  context.clearRect(0, 0, canvas.width, canvas.height);
+  for (let minute = 0; minute < minutes; minute++) {
+    if (heatmap.mandatoryFree[minute] < heatmap.numMandatory) {
+      context.fillStyle = '#ccc';
+    } else {
+      const share = (heatmap.numOptional == 0) ?
+          1 : heatmap.optionalFree[minute] / heatmap.numOptional;
+      context.fillStyle = 'rgba(0, 128, 0, ' + (0.2 + 0.8 * share) + ')';
+    }
+    context.fillRect(minute * width, 0, width, canvas.height);
+  }
+}
+
 /**
  * Converts the total number of minutes since midnight to a string displaying
  * hours and minutes in 24 hour format. For example: "11:32" or "22:14".
@@ -96,6 +134,11 @@ class MeetingRequest {
     this.duration = duration;
     this.attendees = attendees;
     this.optional_attendees = optional_attendees;
+    // Weights of the optional attendees who matter more or less than usual.
+    // Everyone else has a weight of one.
+    this.optional_attendee_weights = {};
+    // How long the server may search, in milliseconds. Zero means no limit.
+    this.deadline_millis = 0;
   }
 }
 
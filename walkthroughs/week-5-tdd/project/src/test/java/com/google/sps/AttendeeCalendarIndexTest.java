@@ -0,0 +1,190 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AttendeeCalendarIndexTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  @Test
+  public void unknownAttendeeIsNeverBusy() {
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(Collections.emptySet());
+
+    Assert.assertFalse(index.contains(PERSON_A));
+    Assert.assertEquals(Arrays.asList(), index.getBusyTimes(PERSON_A));
+  }
+
+  @Test
+  public void busyTimesAreSortedAndMerged() {
+    // Events  : |--A--|
+    //              |----A----|       |--A--|
+    // Busy    : |------------|       |-----|
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_0800AM + 15, TIME_0900AM, false),
+            Arrays.asList(PERSON_A, PERSON_B)));
+
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false));
+
+    Assert.assertEquals(expected, index.getBusyTimes(PERSON_A));
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(TIME_0800AM + 15, TIME_0900AM, false)),
+        index.getBusyTimes(PERSON_B));
+  }
+
+  @Test
+  public void eventsWithSameStartAreAllKept() {
+    // Both events start at the same time. The longer one must not be dropped.
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0800AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A)));
+
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0800AM, TIME_1000AM, false));
+
+    Assert.assertEquals(expected, index.getBusyTimes(PERSON_A));
+  }
+
+  @Test
+  public void withEventsMatchesRebuiltIndex() {
+    Random random = new Random(41);
+    List<String> people = Arrays.asList(PERSON_A, PERSON_B, "Person C", "Person D");
+    List<Event> events = new ArrayList<>();
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(events);
+
+    for (int batch = 0; batch < 50; batch++) {
+      List<Event> added = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.duration());
+        added.add(new Event("Event " + batch + " " + i,
+            TimeRange.fromStartDuration(start, random.nextInt(120)),
+            Arrays.asList(people.get(random.nextInt(people.size())))));
+      }
+      events.addAll(added);
+      index = index.withEvents(added);
+
+      AttendeeCalendarIndex rebuilt = AttendeeCalendarIndex.of(events);
+      for (String person : people) {
+        Assert.assertEquals(rebuilt.getBusyTimes(person), index.getBusyTimes(person));
+      }
+    }
+  }
+
+  @Test
+  public void withEventsLeavesOriginalUnchanged() {
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+            Arrays.asList(PERSON_A)));
+
+    AttendeeCalendarIndex newer = index.withEvents(Arrays.asList(
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A, PERSON_B))));
+
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false)),
+        index.getBusyTimes(PERSON_A));
+    Assert.assertFalse(index.contains(PERSON_B));
+    Assert.assertEquals(2, newer.getBusyTimes(PERSON_A).size());
+    Assert.assertTrue(newer.getVersion() > index.getVersion());
+  }
+
+  @Test
+  public void recurringEventsAreMergedInsideTheWindow() {
+    // Events    :      |----A----|
+    // Recurring : |----A----|      (every day)
+    // Busy      : |--------------|
+    int tomorrow = TimeRange.WHOLE_DAY.duration();
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(
+        Arrays.asList(new Event("Event 1",
+            TimeRange.fromStartEnd(tomorrow + TIME_0830AM, tomorrow + TIME_1000AM, false),
+            Arrays.asList(PERSON_A))),
+        Arrays.asList(RecurringEvent.daily("Standup",
+            TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false), Arrays.asList(PERSON_A))));
+
+    Assert.assertTrue(index.contains(PERSON_A));
+    Assert.assertEquals(1, index.getBusyTimes(PERSON_A).size());
+    Assert.assertEquals(
+        Arrays.asList(
+            TimeRange.fromStartEnd(tomorrow + TIME_0800AM, tomorrow + TIME_1000AM, false)),
+        index.getBusyTimes(PERSON_A, TimeRange.fromStartDuration(tomorrow, tomorrow)));
+  }
+
+  @Test
+  public void groupBusyTimesAreTheUnionOfItsMembers() {
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_B)));
+
+    AttendeeCalendarIndex grouped = index.withGroup("Team", Arrays.asList(PERSON_A, PERSON_B));
+
+    Assert.assertTrue(grouped.isGroup("Team"));
+    Assert.assertFalse(index.isGroup("Team"));
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(TIME_0800AM, TIME_1000AM, false)),
+        grouped.getBusyTimes("Team"));
+  }
+
+  @Test
+  public void groupIsUpdatedWhenMembersGetEvents() {
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+            Arrays.asList(PERSON_A)))
+        .withGroup("Team", Arrays.asList(PERSON_A, PERSON_B));
+
+    AttendeeCalendarIndex newer = index.withEvents(Arrays.asList(
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_B))));
+
+    Assert.assertEquals(1, index.getBusyTimes("Team").size());
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+        TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false)), newer.getBusyTimes("Team"));
+  }
+
+  @Test
+  public void groupsCannotContainGroups() {
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(Collections.emptySet())
+        .withGroup("Team", Arrays.asList(PERSON_A));
+
+    try {
+      index.withGroup("Department", Arrays.asList("Team", PERSON_B));
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
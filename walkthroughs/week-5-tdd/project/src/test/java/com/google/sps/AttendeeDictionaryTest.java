@@ -0,0 +1,42 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AttendeeDictionaryTest {
+  @Test
+  public void fullDictionaryRejectsOnlyNewNames() {
+    AttendeeDictionary dictionary = new AttendeeDictionary(2);
+    int personA = dictionary.intern("Person A");
+    int personB = dictionary.intern("Person B");
+
+    try {
+      dictionary.intern("Person C");
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("Cannot add more than 2 attendees", e.getMessage());
+    }
+    Assert.assertEquals(personA, dictionary.intern("Person A"));
+    Assert.assertEquals(personB, dictionary.lookup("Person B"));
+    Assert.assertEquals(-1, dictionary.lookup("Person C"));
+    Assert.assertEquals(2, dictionary.size());
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AttendeeSetTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  @Test
+  public void duplicatesAreIgnored() {
+    AttendeeSet set = AttendeeSet.of(Arrays.asList(PERSON_A, PERSON_B, PERSON_A));
+
+    Assert.assertEquals(2, set.size());
+    Assert.assertTrue(set.contains(PERSON_A));
+    Assert.assertTrue(set.contains(PERSON_B));
+    Assert.assertFalse(set.contains(PERSON_C));
+    Assert.assertFalse(set.contains("Nobody has this name"));
+  }
+
+  @Test
+  public void equalToOtherSets() {
+    AttendeeSet set = AttendeeSet.of(Arrays.asList(PERSON_B, PERSON_A));
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList(PERSON_A, PERSON_B)), set);
+    Assert.assertEquals(set, new HashSet<>(Arrays.asList(PERSON_A, PERSON_B)));
+    Assert.assertEquals(
+        new HashSet<>(Arrays.asList(PERSON_A, PERSON_B)).hashCode(), set.hashCode());
+    Assert.assertEquals(AttendeeSet.of(Arrays.asList(PERSON_A, PERSON_B)), set);
+  }
+
+  @Test
+  public void withAddsOneAttendee() {
+    AttendeeSet set = AttendeeSet.of(Arrays.asList(PERSON_A));
+
+    AttendeeSet bigger = set.with(PERSON_C);
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList(PERSON_A, PERSON_C)), bigger);
+    Assert.assertEquals(1, set.size());
+    Assert.assertSame(bigger, bigger.with(PERSON_A));
+  }
+
+  @Test
+  public void eventSerializesAttendeeNames() {
+    Event event = new Event("Event", TimeRange.fromStartDuration(0, 30), Arrays.asList(PERSON_A));
+
+    String json = new Gson().toJson(event);
+
+    Assert.assertTrue(json, json.contains("\"attendees\":[\"Person A\"]"));
+  }
+}
@@ -0,0 +1,92 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AvailabilityHeatmapTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  @Test
+  public void countsFreeAttendees() {
+    // Person A : |--A--|
+    // Person B :    |--B--|
+    // Person C :    |-----C-----|
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(
+        new Event("Event 1", TimeRange.fromStartEnd(0, 100, false), Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(50, 150, false), Arrays.asList(PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartEnd(50, 200, false), Arrays.asList(PERSON_C)),
+        // Overlaps Event 3, so it must not count Person C twice.
+        new Event("Event 4", TimeRange.fromStartEnd(60, 120, false), Arrays.asList(PERSON_C)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), 30);
+    request.addOptionalAttendee(PERSON_C);
+
+    AvailabilityHeatmap heatmap = AvailabilityHeatmap.of(index, request);
+
+    Assert.assertEquals(2, heatmap.getNumMandatory());
+    Assert.assertEquals(1, heatmap.getNumOptional());
+    Assert.assertEquals(1, heatmap.getMandatoryFree(0));
+    Assert.assertEquals(0, heatmap.getMandatoryFree(99));
+    Assert.assertEquals(1, heatmap.getMandatoryFree(100));
+    Assert.assertEquals(2, heatmap.getMandatoryFree(150));
+    Assert.assertEquals(1, heatmap.getOptionalFree(49));
+    Assert.assertEquals(0, heatmap.getOptionalFree(50));
+    Assert.assertEquals(0, heatmap.getOptionalFree(199));
+    Assert.assertEquals(1, heatmap.getOptionalFree(200));
+    Assert.assertEquals(1, heatmap.getOptionalFree(TimeRange.END_OF_DAY));
+  }
+
+  @Test
+  public void ignoresOtherDays() {
+    int day = TimeRange.WHOLE_DAY.duration();
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(
+        new Event("Event 1", TimeRange.fromStartEnd(day - 10, day + 10, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(day + 20, day + 30, false),
+            Arrays.asList(PERSON_A)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 30);
+
+    AvailabilityHeatmap heatmap = AvailabilityHeatmap.of(index, request);
+
+    Assert.assertEquals(1, heatmap.getMandatoryFree(day - 11));
+    Assert.assertEquals(0, heatmap.getMandatoryFree(day - 10));
+    Assert.assertEquals(0, heatmap.getMandatoryFree(TimeRange.END_OF_DAY));
+  }
+
+  @Test
+  public void attendeesWithoutEventsAreAlwaysFree() {
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(
+        new Event("Event 1", TimeRange.fromStartEnd(0, 100, false), Arrays.asList(PERSON_A)));
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A, "Person without events"), 30);
+    request.addOptionalAttendee("Optional person without events");
+
+    AvailabilityHeatmap heatmap = AvailabilityHeatmap.of(index, request);
+
+    Assert.assertEquals(2, heatmap.getNumMandatory());
+    Assert.assertEquals(1, heatmap.getNumOptional());
+    Assert.assertEquals(1, heatmap.getMandatoryFree(0));
+    Assert.assertEquals(2, heatmap.getMandatoryFree(100));
+    Assert.assertEquals(1, heatmap.getOptionalFree(0));
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventIngesterTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  @Test
+  public void readsOneEventPerLine() throws IOException {
+    List<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(60, 30), Arrays.asList(PERSON_A)),
+        new Event(
+            "Event 2", TimeRange.fromStartDuration(600, 90), Arrays.asList(PERSON_A, PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartDuration(900, 15), Arrays.asList(PERSON_B)));
+    StringBuilder ndjson = new StringBuilder();
+    Gson gson = new Gson();
+    for (Event event : events) {
+      ndjson.append(gson.toJson(event)).append('\n');
+    }
+    EventStore store = new EventStore();
+
+    EventIngester.Result result =
+        new EventIngester(store, 2).ingest(new StringReader(ndjson.toString()));
+
+    Assert.assertEquals(3, result.getEvents());
+    Assert.assertEquals(2, result.getBatches());
+    Assert.assertEquals(events, new ArrayList<>(store.snapshot().getEvents()));
+    Assert.assertEquals(AttendeeCalendarIndex.of(events).getBusyTimes(PERSON_B),
+        store.snapshot().getIndex().getBusyTimes(PERSON_B));
+  }
+
+  @Test
+  public void emptyInputAddsNothing() throws IOException {
+    EventStore store = new EventStore();
+
+    EventIngester.Result result = new EventIngester(store).ingest(new StringReader("\n"));
+
+    Assert.assertEquals(0, result.getEvents());
+    Assert.assertEquals(1, store.getSnapshotCount());
+  }
+
+  @Test
+  public void badRecordIsReported() throws IOException {
+    String ndjson = "{\"title\":\"Event 1\",\"when\":{\"start\":0,\"duration\":30},"
+        + "\"attendees\":[\"Person A\"]}\n"
+        + "{\"title\":\"Event 2\",\"attendees\":[\"Person A\"]}\n";
+    EventStore store = new EventStore();
+
+    try {
+      new EventIngester(store, 1).ingest(new StringReader(ndjson));
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("record 2"));
+    }
+    // The record before the bad one was already added.
+    Assert.assertEquals(1, store.snapshot().getEvents().size());
+  }
+}
@@ -0,0 +1,170 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventStoreTest {
+  private static final String PERSON_A = "Person A";
+
+  private static final Event MORNING = new Event("Morning",
+      TimeRange.fromStartEnd(TimeRange.getTimeInMinutes(9, 0), TimeRange.getTimeInMinutes(10, 0),
+          false),
+      Arrays.asList(PERSON_A));
+  private static final Event AFTERNOON = new Event("Afternoon",
+      TimeRange.fromStartEnd(TimeRange.getTimeInMinutes(14, 0), TimeRange.getTimeInMinutes(15, 0),
+          false),
+      Arrays.asList(PERSON_A));
+
+  private final FindMeetingQuery query = new FindMeetingQuery();
+
+  @Test
+  public void writesPublishNewSnapshots() {
+    EventStore store = new EventStore();
+    EventStore.Snapshot empty = store.snapshot();
+
+    long id = store.add(MORNING);
+    EventStore.Snapshot added = store.snapshot();
+    Assert.assertTrue(store.update(id, AFTERNOON));
+    EventStore.Snapshot updated = store.snapshot();
+    Assert.assertTrue(store.remove(id));
+
+    Assert.assertTrue(empty.getEvents().isEmpty());
+    Assert.assertEquals(Arrays.asList(MORNING), new ArrayList<>(added.getEvents()));
+    Assert.assertEquals(Arrays.asList(AFTERNOON), new ArrayList<>(updated.getEvents()));
+    Assert.assertTrue(store.snapshot().getEvents().isEmpty());
+    Assert.assertTrue(added.getVersion() > empty.getVersion());
+    Assert.assertTrue(updated.getVersion() > added.getVersion());
+  }
+
+  @Test
+  public void missingEventsAreReported() {
+    EventStore store = new EventStore();
+
+    Assert.assertFalse(store.remove(42));
+    Assert.assertFalse(store.update(42, MORNING));
+    Assert.assertTrue(store.snapshot().getEvents().isEmpty());
+  }
+
+  @Test
+  public void oldSnapshotsAreUnchanged() {
+    EventStore store = new EventStore(Arrays.asList(MORNING));
+    EventStore.Snapshot before = store.snapshot();
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 60);
+    Collection<TimeRange> expected = query.query(before.getIndex(), request);
+
+    store.add(AFTERNOON);
+
+    Assert.assertEquals(expected, query.query(before.getIndex(), request));
+    Assert.assertNotEquals(expected, query.query(store.snapshot().getIndex(), request));
+  }
+
+  @Test
+  public void concurrentWritesAreBatched() throws InterruptedException {
+    EventStore store = new EventStore();
+    int numThreads = 8;
+    int writesPerThread = 200;
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numThreads; t++) {
+      int thread = t;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < writesPerThread; i++) {
+          store.add(new Event("Event " + thread + " " + i,
+              TimeRange.fromStartDuration(i, 1), Arrays.asList("Person " + thread)));
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(numThreads * writesPerThread, store.snapshot().getEvents().size());
+    // Never more than one snapshot per write, plus the first one.
+    Assert.assertTrue(store.getSnapshotCount() <= numThreads * writesPerThread + 1);
+  }
+
+  @Test
+  public void snapshotsOnlySeeTheirOwnEvents() {
+    EventStore store = new EventStore(Arrays.asList(MORNING));
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      events.add(new Event("Event " + i, TimeRange.fromStartDuration(i % 1000, 1),
+          Arrays.asList(PERSON_A)));
+    }
+    List<Long> firstIds = store.addAll(events.subList(0, 1500));
+    EventStore.Snapshot half = store.snapshot();
+    List<Long> secondIds = store.addAll(events.subList(1500, 3000));
+    EventStore.Snapshot full = store.snapshot();
+
+    Assert.assertTrue(store.remove(firstIds.get(0)));
+
+    Assert.assertEquals(1501, half.getEvents().size());
+    Assert.assertNull(half.getEvent(secondIds.get(0)));
+    Assert.assertEquals(events.get(0), full.getEvent(firstIds.get(0)));
+    Assert.assertEquals(3001, new ArrayList<>(full.getEvents()).size());
+    Assert.assertNull(store.snapshot().getEvent(firstIds.get(0)));
+    Assert.assertEquals(events.get(2999), store.snapshot().getEvent(secondIds.get(1499)));
+    Assert.assertEquals(3000, new ArrayList<>(store.snapshot().getEvents()).size());
+  }
+
+  @Test
+  public void addAllPublishesOneSnapshot() {
+    EventStore store = new EventStore();
+
+    List<Long> ids = store.addAll(Arrays.asList(MORNING, AFTERNOON));
+
+    Assert.assertEquals(2, store.getSnapshotCount());
+    Assert.assertEquals(MORNING, store.snapshot().getEvent(ids.get(0)));
+    Assert.assertEquals(AFTERNOON, store.snapshot().getEvent(ids.get(1)));
+  }
+
+  @Test
+  public void groupsAreKeptWhenTheIndexIsRebuilt() {
+    EventStore store = new EventStore(Arrays.asList(MORNING));
+    store.putGroup("Team", Arrays.asList(PERSON_A));
+    long id = store.add(AFTERNOON);
+
+    Assert.assertEquals(2, store.snapshot().getIndex().getBusyTimes("Team").size());
+    Assert.assertTrue(store.remove(id));
+    Assert.assertEquals(Arrays.asList(MORNING.getWhen()),
+        store.snapshot().getIndex().getBusyTimes("Team"));
+  }
+
+  @Test
+  public void rejectedGroupIsReported() {
+    EventStore store = new EventStore();
+    store.putGroup("Team", Arrays.asList(PERSON_A));
+
+    try {
+      store.putGroup("Team", Arrays.asList("Team"));
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    Assert.assertTrue(store.snapshot().getIndex().isGroup("Team"));
+  }
+}
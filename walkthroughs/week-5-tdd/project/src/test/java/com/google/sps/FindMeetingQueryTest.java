@@ -18,7 +18,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -456,4 +466,842 @@ public final class FindMeetingQueryTest {
 
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void eventsWithSameStartAreBothConsidered() {
+    // Both events start at the same time, so the longer one decides when the attendee is free.
+    //
+    // Events  :       |--A--|
+    //                 |-----A-----|
+    // Day     : |---------------------|
+    // Options : |--1--|           |-2-|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0830AM, DURATION_2_HOUR),
+            Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM + DURATION_2_HOUR, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void sweepMatchesExhaustiveSearch() {
+    // The sweep solver must pick exactly what the exhaustive search picks, including how it breaks
+    // ties between equally good groups of optional attendees.
+    Random random = new Random(42);
+    List<String> people = people(8);
+
+    for (int trial = 0; trial < 200; trial++) {
+      List<Event> events = randomEvents(random, people, 12, 15, 194);
+
+      MeetingRequest request =
+          new MeetingRequest(people.subList(0, random.nextInt(3)), 15 + random.nextInt(120));
+      for (String person : people.subList(2, people.size())) {
+        request.addOptionalAttendee(person);
+      }
+
+      Collection<TimeRange> expected =
+          query.query(events, request, FindMeetingQuery.Mode.EXHAUSTIVE);
+      Collection<TimeRange> actual = query.query(events, request, FindMeetingQuery.Mode.SWEEP);
+
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void bitsetMatchesExhaustiveSearch() {
+    Random random = new Random(7);
+    List<String> people = people(8);
+
+    for (int trial = 0; trial < 200; trial++) {
+      List<Event> events = randomEvents(random, people, 12, 1, 180);
+
+      MeetingRequest request =
+          new MeetingRequest(people.subList(0, random.nextInt(3)), 1 + random.nextInt(120));
+      for (String person : people.subList(2, people.size())) {
+        request.addOptionalAttendee(person);
+      }
+
+      Collection<TimeRange> expected =
+          query.query(events, request, FindMeetingQuery.Mode.EXHAUSTIVE);
+      Collection<TimeRange> actual = query.query(events, request, FindMeetingQuery.Mode.BITSET);
+
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void parallelMatchesExhaustiveSearch() {
+    // Use enough optional attendees that the search is split into several tasks.
+    Random random = new Random(11);
+    List<String> people = people(14);
+
+    for (int trial = 0; trial < 20; trial++) {
+      List<Event> events = randomEvents(random, people, 20, 15, 194);
+
+      MeetingRequest request =
+          new MeetingRequest(people.subList(0, random.nextInt(3)), 15 + random.nextInt(120));
+      for (String person : people.subList(2, people.size())) {
+        request.addOptionalAttendee(person);
+      }
+
+      Collection<TimeRange> expected =
+          query.query(events, request, FindMeetingQuery.Mode.EXHAUSTIVE);
+      Collection<TimeRange> actual = query.query(events, request, FindMeetingQuery.Mode.PARALLEL);
+
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void queryAllAnswersInRequestOrder() {
+    Random random = new Random(3);
+    List<String> people = people(8);
+
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.duration() - 30);
+      events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, 30),
+          Arrays.asList(people.get(random.nextInt(people.size())))));
+    }
+
+    List<MeetingRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      int from = random.nextInt(people.size());
+      MeetingRequest request = new MeetingRequest(
+          people.subList(from, from + random.nextInt(people.size() - from)),
+          15 + random.nextInt(120));
+      request.addOptionalAttendee(people.get(random.nextInt(people.size())));
+      requests.add(request);
+    }
+
+    List<Collection<TimeRange>> actual = query.queryAll(events, requests);
+
+    Assert.assertEquals(requests.size(), actual.size());
+    for (int i = 0; i < requests.size(); i++) {
+      Assert.assertEquals(query.query(events, requests.get(i)), actual.get(i));
+    }
+  }
+
+  @Test
+  public void queryAllRunsOnTheGivenPool() {
+    AtomicInteger threadsCreated = new AtomicInteger();
+    ForkJoinPool pool = new ForkJoinPool(2, forkJoinPool -> {
+      threadsCreated.incrementAndGet();
+      return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+    }, null, false);
+    List<MeetingRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      requests.add(new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES));
+    }
+
+    try {
+      FindMeetingQuery pooledQuery = new FindMeetingQuery(pool);
+      pooledQuery.queryAll(NO_EVENTS, requests);
+      pooledQuery.queryAll(NO_EVENTS, requests);
+
+      Assert.assertFalse(pool.isShutdown());
+      Assert.assertTrue(threadsCreated.get() >= 1 && threadsCreated.get() <= 2);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void manyMandatoryAttendeesMatchBitset() {
+    // Enough attendees to merge their busy times with a heap. The bitset mode checks every minute.
+    Random random = new Random(5);
+    List<String> people = people(FindMeetingQuery.HEAP_MERGE_THRESHOLD * 2);
+
+    for (int trial = 0; trial < 200; trial++) {
+      List<Event> events = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.duration() - 1);
+        int duration = 1 + random.nextInt(60);
+        events.add(new Event("Event " + i,
+            TimeRange.fromStartDuration(start, Math.min(duration, TimeRange.END_OF_DAY - start)),
+            Arrays.asList(people.get(random.nextInt(people.size())))));
+      }
+
+      MeetingRequest request = new MeetingRequest(
+          people.subList(0, FindMeetingQuery.HEAP_MERGE_THRESHOLD + random.nextInt(16)),
+          random.nextInt(60));
+
+      Collection<TimeRange> expected = query.query(events, request, FindMeetingQuery.Mode.BITSET);
+      Collection<TimeRange> actual = query.query(events, request, FindMeetingQuery.Mode.SWEEP);
+
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void horizonSpansSeveralDays() {
+    // Day     : |--- 0 ---|--- 1 ---|--- 2 ---|
+    // Person A: |  |--|   |---------|  |--|   |
+    // Answer  : |--|  |----------------|  |---|
+    int day = TimeRange.WHOLE_DAY.duration();
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_1100AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(day + TIME_0800AM, day + TIME_1000AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3",
+            TimeRange.fromStartEnd(2 * day + TIME_0900AM, 2 * day + TIME_1100AM, false),
+            Arrays.asList(PERSON_A)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR);
+
+    Collection<TimeRange> actual = query.query(AttendeeCalendarIndex.of(events), request,
+        TimeRange.fromStartEnd(0, 3 * day, false));
+    Collection<TimeRange> expected = Arrays.asList(TimeRange.fromStartEnd(0, TIME_0900AM, false),
+        TimeRange.fromStartEnd(TIME_1100AM, day + TIME_0800AM, false),
+        TimeRange.fromStartEnd(day + TIME_1000AM, 2 * day + TIME_0900AM, false),
+        TimeRange.fromStartEnd(2 * day + TIME_1100AM, 3 * day, false));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void singleDayIgnoresOtherDays() {
+    int day = TimeRange.WHOLE_DAY.duration();
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_1100AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(day, day), Arrays.asList(PERSON_A)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected = Arrays.asList(TimeRange.fromStartEnd(0, TIME_0900AM, false),
+        TimeRange.fromStartEnd(TIME_1100AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void laterDayMatchesSingleDay() {
+    // Moving every event to a later day and querying that day gives the same slots, moved too.
+    Random random = new Random(13);
+    int day = TimeRange.WHOLE_DAY.duration();
+    List<String> people = people(6);
+
+    for (int trial = 0; trial < 200; trial++) {
+      int offset = day * (1 + random.nextInt(30));
+      List<Event> events = new ArrayList<>();
+      List<Event> movedEvents = new ArrayList<>();
+      for (int i = 0; i < 12; i++) {
+        int start = random.nextInt(day - 30);
+        int duration = 1 + random.nextInt(Math.min(180, day - start));
+        List<String> attendees = Arrays.asList(people.get(random.nextInt(people.size())));
+        events.add(
+            new Event("Event " + i, TimeRange.fromStartDuration(start, duration), attendees));
+        movedEvents.add(new Event("Event " + i,
+            TimeRange.fromStartDuration(offset + start, duration), attendees));
+        // Events on the neighbouring days must not change anything.
+        movedEvents.add(new Event("Before " + i,
+            TimeRange.fromStartDuration(offset - day + start, duration), attendees));
+        movedEvents.add(new Event("After " + i,
+            TimeRange.fromStartDuration(offset + day + start, duration), attendees));
+      }
+
+      MeetingRequest request =
+          new MeetingRequest(people.subList(0, random.nextInt(3)), 15 + random.nextInt(120));
+      for (String person : people.subList(2, people.size())) {
+        request.addOptionalAttendee(person);
+      }
+
+      for (FindMeetingQuery.Mode mode : FindMeetingQuery.Mode.values()) {
+        List<TimeRange> expected = new ArrayList<>();
+        for (TimeRange range : query.query(events, request, mode)) {
+          expected.add(TimeRange.fromStartDuration(offset + range.start(), range.duration()));
+        }
+        Collection<TimeRange> actual = query.query(AttendeeCalendarIndex.of(movedEvents), request,
+            TimeRange.fromStartDuration(offset, day), mode);
+
+        Assert.assertEquals(expected, actual);
+      }
+    }
+  }
+
+  @Test
+  public void findEarliestSkipsShortGaps() {
+    // Events  : |--A--|     |--B--|
+    // Gaps    :       |-----|     |--------|
+    // Earliest:                   |--------|
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_B)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_1_HOUR);
+
+    Optional<TimeRange> actual = query.findEarliest(events, request, TIME_0800AM);
+
+    Assert.assertEquals(
+        Optional.of(TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true)), actual);
+  }
+
+  @Test
+  public void findEarliestNoRoom() {
+    Collection<Event> events = Arrays.asList(new Event("Event 1",
+        TimeRange.fromStartEnd(TIME_0830AM, TimeRange.END_OF_DAY, true), Arrays.asList(PERSON_A)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR);
+
+    Assert.assertEquals(Optional.empty(), query.findEarliest(events, request, TIME_0800AM));
+  }
+
+  @Test
+  public void findEarliestMatchesFirstQueryResult() {
+    Random random = new Random(17);
+    int day = TimeRange.WHOLE_DAY.duration();
+    List<String> people = people(6);
+
+    for (int trial = 0; trial < 200; trial++) {
+      List<Event> events = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        int start = random.nextInt(3 * day - 30);
+        events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, random.nextInt(240)),
+            Arrays.asList(people.get(random.nextInt(people.size())))));
+      }
+      AttendeeCalendarIndex index = AttendeeCalendarIndex.of(events);
+      MeetingRequest request =
+          new MeetingRequest(people.subList(0, 1 + random.nextInt(5)), random.nextInt(180));
+      int from = random.nextInt(day);
+      TimeRange horizon = TimeRange.fromStartEnd(from, from + 2 * day, false);
+
+      Collection<TimeRange> all = query.query(index, request, horizon);
+      Optional<TimeRange> expected = all.stream().findFirst();
+
+      Assert.assertEquals(expected, query.findEarliest(index, request, horizon));
+    }
+  }
+
+  @Test
+  public void topKRanksByOptionalAttendees() {
+    // Person A :                |--A--|
+    // Person B : |-------B------|
+    // Person C :                      |-----C-----|
+    // Best     : 8:30 with B and C, then 0:00 with C, then 9:30 with B
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_0930AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_C)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(PERSON_C);
+
+    List<RankedSlot> actual = query.queryTopK(AttendeeCalendarIndex.of(events), request, 3);
+
+    Assert.assertEquals(3, actual.size());
+    Assert.assertEquals(TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES),
+        actual.get(0).getWhen());
+    Assert.assertEquals(
+        new HashSet<>(Arrays.asList(PERSON_B, PERSON_C)), actual.get(0).getOptionalAttendees());
+    Assert.assertEquals(TimeRange.fromStartDuration(TimeRange.START_OF_DAY, DURATION_30_MINUTES),
+        actual.get(1).getWhen());
+    Assert.assertEquals(
+        new HashSet<>(Arrays.asList(PERSON_C)), actual.get(1).getOptionalAttendees());
+    Assert.assertEquals(TimeRange.fromStartDuration(TIME_0930AM, DURATION_30_MINUTES),
+        actual.get(2).getWhen());
+    Assert.assertEquals(
+        new HashSet<>(Arrays.asList(PERSON_B)), actual.get(2).getOptionalAttendees());
+  }
+
+  @Test
+  public void topKReturnsEachSlotOnce() {
+    // Person A :               |-A-|
+    // Person B :               |-B-|
+    // Person C :            |----C-|
+    // Every busy time ends at 9:30, so 9:30 is only offered once.
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartEnd(TimeRange.getTimeInMinutes(8, 20),
+            TIME_0930AM, false), Arrays.asList(PERSON_C)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(PERSON_C);
+
+    List<RankedSlot> actual = query.queryTopK(AttendeeCalendarIndex.of(events), request, 3);
+
+    Assert.assertEquals(2, actual.size());
+    Assert.assertEquals(TimeRange.fromStartDuration(TimeRange.START_OF_DAY, DURATION_30_MINUTES),
+        actual.get(0).getWhen());
+    Assert.assertEquals(TimeRange.fromStartDuration(TIME_0930AM, DURATION_30_MINUTES),
+        actual.get(1).getWhen());
+  }
+
+  @Test
+  public void topKWithHugeKOnlyReturnsTheSlotsThereAre() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    List<RankedSlot> actual =
+        query.queryTopK(AttendeeCalendarIndex.of(NO_EVENTS), request, Integer.MAX_VALUE);
+
+    Assert.assertEquals(1, actual.size());
+  }
+
+  @Test
+  public void topKPreferenceBreaksTies() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+            Arrays.asList(PERSON_A)));
+
+    // No slot has optional attendees, so the preference decides. The latest slot of the day wins
+    // when later is better, and the earliest one when earlier is better.
+    List<RankedSlot> latest = query.queryTopK(AttendeeCalendarIndex.of(events), request,
+        TimeRange.WHOLE_DAY, 1, slot -> slot.start());
+    List<RankedSlot> earliest = query.queryTopK(AttendeeCalendarIndex.of(events), request,
+        TimeRange.WHOLE_DAY, 1, slot -> -slot.start());
+
+    Assert.assertEquals(
+        TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(23, 30), DURATION_30_MINUTES),
+        latest.get(0).getWhen());
+    Assert.assertEquals(TimeRange.fromStartDuration(TimeRange.START_OF_DAY, DURATION_30_MINUTES),
+        earliest.get(0).getWhen());
+  }
+
+  @Test
+  public void topKPreferenceMatchesEveryMinute() {
+    // For a preference that rises through the day, checking every start minute finds the same best
+    // slot as scoring the ends of each run of starts.
+    Random random = new Random(37);
+    List<String> people = Arrays.asList(PERSON_A, PERSON_B, PERSON_C, "Person D");
+    for (int trial = 0; trial < 50; trial++) {
+      List<Event> events = randomEvents(random, people, 10, 1, 180);
+      MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+      request.addOptionalAttendee(PERSON_C);
+      request.addOptionalAttendee("Person D");
+      AttendeeCalendarIndex index = AttendeeCalendarIndex.of(events);
+
+      RankedSlot expected = null;
+      for (int start = 0; start + DURATION_30_MINUTES <= TimeRange.WHOLE_DAY.end(); start++) {
+        TimeRange when = TimeRange.fromStartDuration(start, DURATION_30_MINUTES);
+        Set<String> optional = new HashSet<>(request.getOptionalAttendees());
+        boolean mandatoryFree = true;
+        for (Event event : events) {
+          if (event.getWhen().overlaps(when)) {
+            optional.removeAll(event.getAttendees());
+            mandatoryFree &= !event.getAttendees().contains(PERSON_A);
+          }
+        }
+        RankedSlot slot = new RankedSlot(when, AttendeeSet.of(optional), start);
+        if (mandatoryFree
+            && (expected == null || RankedSlot.BEST_FIRST.compare(slot, expected) < 0)) {
+          expected = slot;
+        }
+      }
+
+      List<RankedSlot> actual =
+          query.queryTopK(index, request, TimeRange.WHOLE_DAY, 1, slot -> slot.start());
+
+      Assert.assertEquals(expected == null, actual.isEmpty());
+      if (expected != null) {
+        Assert.assertEquals(expected.getWhen(), actual.get(0).getWhen());
+      }
+    }
+  }
+
+  @Test
+  public void topKMatchesEveryMinute() {
+    // Checking every possible start minute finds the same best slots.
+    Random random = new Random(19);
+    List<String> people = people(6);
+
+    for (int trial = 0; trial < 50; trial++) {
+      List<Event> events = randomEvents(random, people, 15, 1, 180);
+      MeetingRequest request =
+          new MeetingRequest(people.subList(0, random.nextInt(3)), 15 + random.nextInt(120));
+      for (String person : people.subList(2, people.size())) {
+        request.addOptionalAttendee(person);
+      }
+
+      Map<TimeRange, RankedSlot> slots = new HashMap<>();
+      List<RankedSlot> expected = new ArrayList<>();
+      for (int start = 0; start + request.getDuration() <= TimeRange.WHOLE_DAY.end(); start++) {
+        TimeRange when = TimeRange.fromStartDuration(start, (int) request.getDuration());
+        Set<String> optional = new HashSet<>(request.getOptionalAttendees());
+        boolean mandatoryFree = true;
+        for (Event event : events) {
+          if (event.getWhen().overlaps(when)) {
+            optional.removeAll(event.getAttendees());
+            mandatoryFree &= Collections.disjoint(event.getAttendees(), request.getAttendees());
+          }
+        }
+        if (mandatoryFree) {
+          RankedSlot slot = new RankedSlot(when, AttendeeSet.of(optional), 0);
+          slots.put(when, slot);
+          expected.add(slot);
+        }
+      }
+      expected.sort(RankedSlot.BEST_FIRST);
+
+      List<RankedSlot> actual = query.queryTopK(AttendeeCalendarIndex.of(events), request, 3);
+
+      // Only the best slot must be the same. After it, minutes with the same attendees differ.
+      Assert.assertTrue(actual.size() <= 3);
+      Assert.assertEquals(expected.isEmpty(), actual.isEmpty());
+      if (!expected.isEmpty()) {
+        Assert.assertEquals(expected.get(0).getWhen(), actual.get(0).getWhen());
+      }
+      for (RankedSlot slot : actual) {
+        Assert.assertEquals(
+            slots.get(slot.getWhen()).getOptionalAttendees(), slot.getOptionalAttendees());
+      }
+    }
+  }
+
+  @Test
+  public void anytimeMatchesExhaustiveSearchBeforeDeadline() {
+    Random random = new Random(23);
+    List<String> people = people(8);
+
+    for (int trial = 0; trial < 100; trial++) {
+      List<Event> events = randomEvents(random, people, 12, 15, 194);
+
+      MeetingRequest request =
+          new MeetingRequest(people.subList(0, random.nextInt(3)), 15 + random.nextInt(120));
+      for (String person : people.subList(2, people.size())) {
+        request.addOptionalAttendee(person);
+      }
+      request.setDeadlineMillis(60_000);
+
+      Collection<TimeRange> expected =
+          query.query(events, request, FindMeetingQuery.Mode.EXHAUSTIVE);
+      Solution actual = query.querySolution(AttendeeCalendarIndex.of(events), request,
+          TimeRange.WHOLE_DAY, FindMeetingQuery.Mode.ANYTIME);
+
+      Assert.assertEquals(expected, actual.solution());
+      Assert.assertTrue(actual.isProvenOptimal());
+    }
+  }
+
+  // Every optional attendee is free in a random half of the hours, so no subset is obviously best
+  // and searching all of them takes far longer than any test should.
+  private static MeetingRequest hardOptionalAttendees(List<Event> events) {
+    Random random = new Random(29);
+    MeetingRequest request = new MeetingRequest(Collections.emptyList(), DURATION_1_HOUR);
+    for (int i = 0; i < 60; i++) {
+      String person = "Person " + i;
+      request.addOptionalAttendee(person);
+      for (int hour = 0; hour < 24; hour++) {
+        if (random.nextBoolean()) {
+          events.add(new Event("Busy " + i + " " + hour,
+              TimeRange.fromStartDuration(hour * 60, 60), Arrays.asList(person)));
+        }
+      }
+    }
+    return request;
+  }
+
+  @Test
+  public void anytimeStopsAtDeadline() {
+    List<Event> events = new ArrayList<>();
+    MeetingRequest request = hardOptionalAttendees(events);
+    request.setDeadlineMillis(50);
+
+    long start = System.nanoTime();
+    Solution actual = query.querySolution(AttendeeCalendarIndex.of(events), request,
+        TimeRange.WHOLE_DAY, FindMeetingQuery.Mode.ANYTIME);
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    Assert.assertFalse(actual.isProvenOptimal());
+    Assert.assertTrue(actual.isValid());
+    // The greedy start already fits more than one person.
+    Assert.assertTrue(actual.numOptionalAttendees() > 1);
+    Assert.assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 5_000);
+  }
+
+  @Test
+  public void parallelStopsWhenInterrupted() throws Exception {
+    List<Event> events = new ArrayList<>();
+    MeetingRequest request = hardOptionalAttendees(events);
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(events);
+    ForkJoinPool pool = new ForkJoinPool(2);
+    AtomicReference<Solution> actual = new AtomicReference<>();
+    Thread solver = new Thread(() -> actual.set(new FindMeetingQuery(pool)
+        .querySolution(index, request, TimeRange.WHOLE_DAY, FindMeetingQuery.Mode.PARALLEL)));
+    long explored = QueryStats.global().get(QueryStats.Counter.SUBSETS_EXPLORED);
+
+    try {
+      solver.start();
+      // Interrupt only once the search has a valid solution to return. Each worker offers a subset
+      // before it explores the next one, so with two workers that has happened by the third.
+      while (QueryStats.global().get(QueryStats.Counter.SUBSETS_EXPLORED) < explored + 3
+          && solver.isAlive()) {
+        Thread.yield();
+      }
+      solver.interrupt();
+      solver.join(5_000);
+
+      Assert.assertFalse(solver.isAlive());
+      Assert.assertFalse(actual.get().isProvenOptimal());
+      Assert.assertTrue(actual.get().isValid());
+      // The tasks left on the pool are pruned too.
+      Assert.assertTrue(pool.awaitQuiescence(5, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void optionalAttendeesWithoutEventsAreAlwaysFree() {
+    // Person A :               |-A-|
+    // Person B : |------B------|
+    // Nobody has ever written an event for Person E, who is free all day.
+    String personE = "Person E without events";
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            Arrays.asList(PERSON_B)));
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(personE, 2);
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(events);
+
+    for (FindMeetingQuery.Mode mode : FindMeetingQuery.Mode.values()) {
+      Solution actual = query.querySolution(index, request, TimeRange.WHOLE_DAY, mode);
+
+      Assert.assertEquals(mode.toString(),
+          Arrays.asList(TimeRange.fromStartEnd(TIME_0930AM, TimeRange.END_OF_DAY, true)),
+          actual.solution());
+      Assert.assertEquals(mode.toString(), 2, actual.numOptionalAttendees());
+      Assert.assertEquals(mode.toString(), 3, actual.optionalWeight(), 0);
+    }
+    RankedSlot top = query.queryTopK(index, request, 1).get(0);
+    Assert.assertEquals(new HashSet<>(Arrays.asList(PERSON_B, personE)),
+        new HashSet<>(top.getOptionalAttendees()));
+    Assert.assertEquals(3, top.getOptionalWeight(), 0);
+    Assert.assertEquals(-1, AttendeeDictionary.global().lookup(personE));
+  }
+
+  @Test
+  public void heavyOptionalAttendeeOutweighsTwoLightOnes() {
+    // Person A can only meet before 10:00, while B and C can only meet after it. A matters more
+    // than both of them together.
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_1000AM, false),
+            Arrays.asList(PERSON_B, PERSON_C)));
+
+    MeetingRequest request = new MeetingRequest(NO_ATTENDEES, DURATION_1_HOUR);
+    request.addOptionalAttendee(PERSON_A, 3);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(PERSON_C);
+
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_1000AM, false));
+    for (FindMeetingQuery.Mode mode : FindMeetingQuery.Mode.values()) {
+      Assert.assertEquals(mode.toString(), expected, query.query(events, request, mode));
+    }
+
+    List<RankedSlot> top = query.queryTopK(AttendeeCalendarIndex.of(events), request, 1);
+    Assert.assertEquals(3.0, top.get(0).getOptionalWeight(), 0);
+    Assert.assertEquals(
+        Arrays.asList(PERSON_A), new ArrayList<>(top.get(0).getOptionalAttendees()));
+  }
+
+  @Test
+  public void weightedModesMatchExhaustiveSearch() {
+    // Weights are multiples of a quarter, so sums are exact and ties, including zero weights, are
+    // broken the same way by every mode.
+    Random random = new Random(31);
+    List<String> people = people(8);
+
+    for (int trial = 0; trial < 200; trial++) {
+      List<Event> events = randomEvents(random, people, 12, 1, 180);
+
+      MeetingRequest request =
+          new MeetingRequest(people.subList(0, random.nextInt(3)), 1 + random.nextInt(120));
+      for (String person : people.subList(2, people.size())) {
+        request.addOptionalAttendee(person, random.nextInt(12) / 4.0);
+      }
+
+      AttendeeCalendarIndex index = AttendeeCalendarIndex.of(events);
+      Solution expected = query.querySolution(
+          index, request, TimeRange.WHOLE_DAY, FindMeetingQuery.Mode.EXHAUSTIVE);
+      for (FindMeetingQuery.Mode mode : FindMeetingQuery.Mode.values()) {
+        Solution actual = query.querySolution(index, request, TimeRange.WHOLE_DAY, mode);
+        Assert.assertEquals(mode.toString(), expected.solution(), actual.solution());
+        Assert.assertEquals(
+            mode.toString(), expected.optionalWeight(), actual.optionalWeight(), 0);
+      }
+    }
+  }
+
+  @Test
+  public void inexactWeightsMatchExhaustiveSearch() {
+    // Tenths are not exact in binary, so sums of the same weights added in a different order can
+    // differ in their last bit. Everyone is busy either all morning or all afternoon, so the two
+    // groups often weigh the same, and pruning must still keep every branch that ties the best.
+    Random random = new Random(47);
+    List<String> people = people(5);
+    int noon = TimeRange.getTimeInMinutes(12, 0);
+    TimeRange morning = TimeRange.fromStartEnd(TimeRange.START_OF_DAY, noon, false);
+    TimeRange afternoon = TimeRange.fromStartEnd(noon, TimeRange.END_OF_DAY, true);
+
+    for (int trial = 0; trial < 1000; trial++) {
+      List<Event> events = new ArrayList<>();
+      MeetingRequest request = new MeetingRequest(NO_ATTENDEES, DURATION_30_MINUTES);
+      for (String person : people) {
+        TimeRange busy = random.nextBoolean() ? morning : afternoon;
+        events.add(new Event("Busy " + person, busy, Arrays.asList(person)));
+        request.addOptionalAttendee(person, (1 + random.nextInt(6)) / 10.0);
+      }
+
+      AttendeeCalendarIndex index = AttendeeCalendarIndex.of(events);
+      Solution expected = query.querySolution(
+          index, request, TimeRange.WHOLE_DAY, FindMeetingQuery.Mode.EXHAUSTIVE);
+      for (FindMeetingQuery.Mode mode : FindMeetingQuery.Mode.values()) {
+        Solution actual = query.querySolution(index, request, TimeRange.WHOLE_DAY, mode);
+        Assert.assertEquals(mode.toString(), expected.solution(), actual.solution());
+        Assert.assertEquals(
+            mode.toString(), expected.optionalWeight(), actual.optionalWeight(), 0);
+      }
+    }
+  }
+
+  @Test
+  public void recurringEventsMatchTheirOccurrences() {
+    int day = TimeRange.WHOLE_DAY.duration();
+    Random random = new Random(41);
+    List<String> people = people(6);
+
+    for (int trial = 0; trial < 50; trial++) {
+      List<RecurringEvent> series = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        TimeRange first = TimeRange.fromStartDuration(
+            random.nextInt(7) * day + random.nextInt(day), 15 + random.nextInt(120));
+        RecurringEvent event = RecurringEvent.daily(
+            "Series " + i, first, Arrays.asList(people.get(random.nextInt(people.size()))));
+        series.add(event.every(1 + random.nextInt(3)));
+      }
+      MeetingRequest request = new MeetingRequest(people.subList(0, 1), 30);
+      for (String person : people.subList(1, people.size())) {
+        request.addOptionalAttendee(person);
+      }
+
+      // Expand a day on either side as well, for occurrences that run past midnight.
+      for (TimeRange horizon : Arrays.asList(
+          TimeRange.WHOLE_DAY, TimeRange.fromStartDuration(200 * day, day))) {
+        List<Event> occurrences = new ArrayList<>();
+        for (RecurringEvent event : series) {
+          occurrences.addAll(
+              event.expand(TimeRange.fromStartDuration(horizon.start() - day, 3 * day)));
+        }
+        AttendeeCalendarIndex expanded = AttendeeCalendarIndex.of(occurrences);
+        AttendeeCalendarIndex lazy = AttendeeCalendarIndex.of(NO_EVENTS, series);
+
+        for (FindMeetingQuery.Mode mode : FindMeetingQuery.Mode.values()) {
+          Assert.assertEquals(mode.toString(), query.query(expanded, request, horizon, mode),
+              query.query(lazy, request, horizon, mode));
+        }
+        Assert.assertEquals(query.findEarliest(expanded, request, horizon),
+            query.findEarliest(lazy, request, horizon));
+      }
+    }
+  }
+
+  @Test
+  public void groupMatchesListingItsMembers() {
+    Random random = new Random(43);
+    List<String> team = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      team.add("Team member " + i);
+    }
+    List<String> others = Arrays.asList(PERSON_A, PERSON_B, PERSON_C);
+
+    for (int trial = 0; trial < 20; trial++) {
+      List<Event> events = new ArrayList<>();
+      for (int i = 0; i < 60; i++) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.duration() - 30);
+        String attendee = i % 4 == 0
+            ? others.get(random.nextInt(others.size()))
+            : team.get(random.nextInt(team.size()));
+        events.add(new Event("Event " + i,
+            TimeRange.fromStartDuration(start, 1 + random.nextInt(30)), Arrays.asList(attendee)));
+      }
+      AttendeeCalendarIndex index = AttendeeCalendarIndex.of(events).withGroup("Team", team);
+
+      List<String> members = new ArrayList<>(team);
+      members.add(PERSON_A);
+      MeetingRequest listed = new MeetingRequest(members, 15);
+      MeetingRequest grouped = new MeetingRequest(Arrays.asList("Team", PERSON_A), 15);
+      for (String person : others.subList(1, others.size())) {
+        listed.addOptionalAttendee(person);
+        grouped.addOptionalAttendee(person);
+      }
+
+      for (FindMeetingQuery.Mode mode : FindMeetingQuery.Mode.values()) {
+        Assert.assertEquals(mode.toString(), query.query(index, listed, mode),
+            query.query(index, grouped, mode));
+      }
+    }
+  }
+
+  @Test
+  public void weightedSweepHandlesHundredsOfAttendees() {
+    // Far too many subsets to enumerate, but only a few thousand boundaries to sweep.
+    Random random = new Random(37);
+    List<Event> events = new ArrayList<>();
+    MeetingRequest request = new MeetingRequest(Collections.emptyList(), DURATION_30_MINUTES);
+    for (int i = 0; i < 300; i++) {
+      String person = "Person " + i;
+      request.addOptionalAttendee(person, 1 + random.nextInt(5));
+      for (int j = 0; j < 5; j++) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.duration() - 60);
+        events.add(new Event("Busy " + i + " " + j, TimeRange.fromStartDuration(start, 60),
+            Arrays.asList(person)));
+      }
+    }
+    AttendeeCalendarIndex index = AttendeeCalendarIndex.of(events);
+
+    Solution actual = query.querySolution(index, request, TimeRange.WHOLE_DAY,
+        FindMeetingQuery.Mode.SWEEP);
+
+    // The best slot from the top K sweep is one of the slots of the best solution.
+    RankedSlot top = query.queryTopK(index, request, 1).get(0);
+    Assert.assertEquals(top.getOptionalWeight(), actual.optionalWeight(), 0);
+    Assert.assertTrue(actual.solution().stream().anyMatch(slot -> slot.contains(top.getWhen())));
+  }
+
+  /** Returns {@code count} people, named Person 0, Person 1 and so on. */
+  private static List<String> people(int count) {
+    List<String> people = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      people.add("Person " + i);
+    }
+    return people;
+  }
+
+  /**
+   * Returns {@code count} events at random times of the day, each lasting from
+   * {@code minDuration} to {@code maxDuration} minutes and attended by one of {@code people}.
+   */
+  private static List<Event> randomEvents(
+      Random random, List<String> people, int count, int minDuration, int maxDuration) {
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.duration() - 30);
+      int duration = minDuration + random.nextInt(maxDuration - minDuration + 1);
+      events.add(new Event("Event " + i,
+          TimeRange.fromStartDuration(start, Math.min(duration, TimeRange.END_OF_DAY - start)),
+          Arrays.asList(people.get(random.nextInt(people.size())))));
+    }
+    return events;
+  }
 }
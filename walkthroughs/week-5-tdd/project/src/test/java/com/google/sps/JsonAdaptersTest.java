@@ -0,0 +1,162 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class JsonAdaptersTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private final Gson gson = JsonAdapters.gson();
+
+  @Test
+  public void eventMatchesReflectiveJson() {
+    Event event = new Event("Event <1>", TimeRange.fromStartDuration(60, 30),
+        Arrays.asList(PERSON_B, PERSON_A));
+
+    Assert.assertEquals(new Gson().toJson(event), gson.toJson(event));
+    Assert.assertEquals(event, gson.fromJson(gson.toJson(event), Event.class));
+  }
+
+  @Test
+  public void eventWritesStraightToWriter() {
+    Event event = new Event("Event", TimeRange.fromStartDuration(0, 15), Arrays.asList(PERSON_A));
+    StringWriter writer = new StringWriter();
+
+    gson.toJson(Arrays.asList(event), writer);
+
+    Assert.assertEquals(new Gson().toJson(Arrays.asList(event)), writer.toString());
+  }
+
+  @Test
+  public void eventWithoutTimeIsRejected() {
+    try {
+      gson.fromJson("{\"title\":\"Event\",\"attendees\":[]}", Event.class);
+      Assert.fail();
+    } catch (JsonParseException e) {
+      Assert.assertEquals("when cannot be null", e.getMessage());
+    }
+  }
+
+  @Test
+  public void rejectedEventIsNotInterned() {
+    String name = "Person only in a rejected event";
+    try {
+      gson.fromJson("{\"attendees\":[\"" + name + "\"],\"title\":\"Event\"}", Event.class);
+      Assert.fail();
+    } catch (JsonParseException e) {
+      Assert.assertEquals(-1, AttendeeDictionary.global().lookup(name));
+    }
+  }
+
+  @Test
+  public void meetingRequestReadsEveryField() {
+    String json = "{\"attendees\":[\"Person A\",\"Person A\"],"
+        + "\"optional_attendees\":[\"Person C\",\"Person B\"],"
+        + "\"optional_attendee_weights\":{\"Person C\":2.5},"
+        + "\"duration\":30,\"deadline_millis\":100,\"unknown\":{\"nested\":[1]}}";
+
+    MeetingRequest request = gson.fromJson(json, MeetingRequest.class);
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList(PERSON_A)), request.getAttendees());
+    Assert.assertEquals(
+        new HashSet<>(Arrays.asList(PERSON_B, PERSON_C)), request.getOptionalAttendees());
+    Assert.assertEquals(2.5, request.getOptionalAttendeeWeight(PERSON_C), 0);
+    Assert.assertEquals(1.0, request.getOptionalAttendeeWeight(PERSON_B), 0);
+    Assert.assertEquals(30, request.getDuration());
+    Assert.assertEquals(100, request.getDeadlineMillis());
+  }
+
+  @Test
+  public void meetingRequestDefaultsMissingFields() {
+    MeetingRequest request =
+        gson.fromJson("{\"attendees\":[],\"optional_attendees\":null,\"duration\":60}",
+            MeetingRequest.class);
+
+    Assert.assertTrue(request.getAttendees().isEmpty());
+    Assert.assertTrue(request.getOptionalAttendees().isEmpty());
+    Assert.assertEquals(60, request.getDuration());
+    Assert.assertEquals(0, request.getDeadlineMillis());
+  }
+
+  @Test
+  public void meetingRequestRoundTrips() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 45);
+    request.addOptionalAttendee(PERSON_B, 3);
+    request.addOptionalAttendee(PERSON_C);
+    request.setDeadlineMillis(20);
+
+    MeetingRequest copy = gson.fromJson(gson.toJson(request), MeetingRequest.class);
+
+    Assert.assertEquals(request.getAttendees(), copy.getAttendees());
+    Assert.assertEquals(request.getOptionalAttendees(), copy.getOptionalAttendees());
+    Assert.assertArrayEquals(
+        request.getOptionalAttendeeWeights(), copy.getOptionalAttendeeWeights(), 0);
+    Assert.assertEquals(request.getDuration(), copy.getDuration());
+    Assert.assertEquals(request.getDeadlineMillis(), copy.getDeadlineMillis());
+  }
+
+  @Test
+  public void meetingRequestWithBadWeightsIsRejected() {
+    for (String weight : Arrays.asList("-5", "NaN", "Infinity")) {
+      String json = "{\"attendees\":[],\"optional_attendees\":[\"Person B\"],"
+          + "\"optional_attendee_weights\":{\"Person B\":" + weight + "},\"duration\":60}";
+      try {
+        // Lenient, like reading from a servlet's reader, so NaN and Infinity are parsed.
+        gson.fromJson(new StringReader(json), MeetingRequest.class);
+        Assert.fail(weight);
+      } catch (JsonParseException e) {
+        Assert.assertEquals("weight must be a non-negative number", e.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void meetingRequestWithNegativeDeadlineIsRejected() {
+    try {
+      gson.fromJson("{\"duration\":60,\"deadline_millis\":-1}", MeetingRequest.class);
+      Assert.fail();
+    } catch (JsonParseException e) {
+      Assert.assertEquals("deadlineMillis cannot be negative", e.getMessage());
+    }
+  }
+
+  @Test
+  public void meetingRequestNamesAreNotInterned() {
+    String name = "Person only in JSON";
+
+    MeetingRequest request = gson.fromJson(
+        "{\"attendees\":[\"" + name + "\"],\"optional_attendees\":[\"" + name + " too\"],"
+            + "\"duration\":30}", MeetingRequest.class);
+
+    Assert.assertEquals(-1, AttendeeDictionary.global().lookup(name));
+    Assert.assertEquals(-1, AttendeeDictionary.global().lookup(name + " too"));
+    Assert.assertEquals(Collections.singleton(name), request.getAttendees());
+  }
+}
@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class MappedCalendarTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void roundTripsEventsAndBusyTimes() throws IOException {
+    Random random = new Random(43);
+    List<String> people = Arrays.asList(PERSON_A, PERSON_B, "Person C", "Persön D");
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      int start = random.nextInt(3 * TimeRange.WHOLE_DAY.duration());
+      events.add(new Event("Event " + (i % 7),
+          TimeRange.fromStartDuration(start, random.nextInt(90)),
+          people.subList(random.nextInt(people.size()), people.size())));
+    }
+    Path path = folder.getRoot().toPath().resolve("calendar.bin");
+
+    MappedCalendar.write(events, path);
+    MappedCalendar calendar = MappedCalendar.open(path);
+
+    Assert.assertEquals(events, calendar.getEvents());
+    AttendeeCalendarIndex expected = AttendeeCalendarIndex.of(events);
+    for (String person : people) {
+      Assert.assertEquals(expected.getBusyTimes(person), calendar.getIndex().getBusyTimes(person));
+    }
+    Assert.assertFalse(calendar.getIndex().contains("Someone Else"));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), 30);
+    request.addOptionalAttendee(PERSON_B);
+    FindMeetingQuery query = new FindMeetingQuery();
+    Assert.assertEquals(
+        query.query(expected, request), query.query(calendar.getIndex(), request));
+  }
+
+  @Test
+  public void writeReplacesExistingFile() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("calendar.bin");
+    Event first =
+        new Event("First", TimeRange.fromStartDuration(0, 30), Arrays.asList(PERSON_A));
+    Event second =
+        new Event("Second", TimeRange.fromStartDuration(60, 30), Arrays.asList(PERSON_B));
+
+    MappedCalendar.write(Arrays.asList(first), path);
+    MappedCalendar.write(Arrays.asList(second), path);
+
+    Assert.assertEquals(Arrays.asList(second), MappedCalendar.open(path).getEvents());
+    // Only the calendar itself is left, without any temporary files.
+    Assert.assertEquals(1, folder.getRoot().list().length);
+  }
+
+  @Test
+  public void storeKeepsMappedIndexUntilWritten() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("calendar.bin");
+    Event morning =
+        new Event("Morning", TimeRange.fromStartDuration(540, 60), Arrays.asList(PERSON_A));
+    Event afternoon =
+        new Event("Afternoon", TimeRange.fromStartDuration(840, 60), Arrays.asList(PERSON_A));
+    MappedCalendar.write(Arrays.asList(morning), path);
+
+    EventStore store = MappedCalendar.open(path).toEventStore();
+    Assert.assertEquals(morning, store.snapshot().getEvent(0));
+
+    long id = store.add(afternoon);
+    Assert.assertEquals(1, id);
+    Assert.assertEquals(Arrays.asList(morning, afternoon),
+        new ArrayList<>(store.snapshot().getEvents()));
+    Assert.assertEquals(AttendeeCalendarIndex.of(morning, afternoon).getBusyTimes(PERSON_A),
+        store.snapshot().getIndex().getBusyTimes(PERSON_A));
+
+    Assert.assertTrue(store.remove(0));
+    Assert.assertEquals(Collections.singletonList(TimeRange.fromStartDuration(840, 60)),
+        store.snapshot().getIndex().getBusyTimes(PERSON_A));
+  }
+
+  @Test
+  public void truncatedFileIsRejected() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("calendar.bin");
+    MappedCalendar.write(Arrays.asList(new Event("Event",
+        TimeRange.fromStartDuration(0, 30), Arrays.asList(PERSON_A, PERSON_B))), path);
+    byte[] bytes = Files.readAllBytes(path);
+
+    // Every cut, down to a bare header, leaves a section or an entry pointing past the end.
+    for (int length = bytes.length - 1; length >= 40; length--) {
+      Files.write(path, Arrays.copyOf(bytes, length));
+      try {
+        MappedCalendar.open(path);
+        Assert.fail("Opened a file cut to " + length + " bytes");
+      } catch (IOException e) {
+        Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Corrupt calendar snapshot"));
+      }
+    }
+  }
+
+  @Test
+  public void entryOutsideItsSectionIsRejected() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("calendar.bin");
+    MappedCalendar.write(Arrays.asList(new Event("Event",
+        TimeRange.fromStartDuration(0, 30), Arrays.asList(PERSON_A))), path);
+    byte[] bytes = Files.readAllBytes(path);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    // Give the only attendee far more busy times than the file holds.
+    buffer.putInt(buffer.getInt(20) + 12, 1_000_000);
+    Files.write(path, bytes);
+
+    try {
+      MappedCalendar.open(path);
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.assertEquals(
+          "Corrupt calendar snapshot: attendee 0 points outside the file", e.getMessage());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void otherFilesAreRejected() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("events.json");
+    Files.write(path, "[{\"title\": \"Not a calendar\"}]".getBytes("UTF-8"));
+
+    MappedCalendar.open(path);
+  }
+}
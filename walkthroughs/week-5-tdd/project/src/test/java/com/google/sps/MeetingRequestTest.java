@@ -44,4 +44,37 @@ public final class MeetingRequestTest {
     int expected = 0;
     Assert.assertEquals(expected, actual);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void optionalAttendeesDefaultToWeightOne() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(PERSON_C, 2.5);
+
+    Assert.assertEquals(1.0, request.getOptionalAttendeeWeight(PERSON_B), 0);
+    Assert.assertEquals(2.5, request.getOptionalAttendeeWeight(PERSON_C), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeWeightIsRejected() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR);
+    request.addOptionalAttendee(PERSON_B, -1);
+  }
+
+  @Test
+  public void requestsDoNotAddNamesToTheDictionary() {
+    String mandatory = "Person only in a request";
+    String optional = "Optional person only in a request";
+    MeetingRequest request = new MeetingRequest(Arrays.asList(mandatory), DURATION_1_HOUR);
+    request.addOptionalAttendee(optional, 2);
+
+    MeetingRequest resolved = request.resolve();
+
+    Assert.assertEquals(-1, AttendeeDictionary.global().lookup(mandatory));
+    Assert.assertEquals(-1, AttendeeDictionary.global().lookup(optional));
+    Assert.assertEquals(0, resolved.getAttendeeIds().length);
+    Assert.assertEquals(0, resolved.getOptionalAttendeeIds().length);
+    Assert.assertEquals(Arrays.asList(optional), resolved.getUnknownOptionalAttendees());
+    Assert.assertEquals(Collections.singleton(mandatory), request.getAttendees());
+  }
+}
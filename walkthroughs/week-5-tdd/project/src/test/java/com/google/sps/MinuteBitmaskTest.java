@@ -0,0 +1,72 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class MinuteBitmaskTest {
+  @Test
+  public void wholeDayIsOneRange() {
+    MinuteBitmask mask = MinuteBitmask.freeTimes(Collections.emptyList());
+
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), mask.ranges(0).toTimeRanges());
+  }
+
+  @Test
+  public void busyTimesSplitTheDay() {
+    MinuteBitmask mask = MinuteBitmask.freeTimes(Arrays.asList(
+        TimeRange.fromStartEnd(60, 130, false), TimeRange.fromStartEnd(200, 1000, false)));
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(0, 60, false), TimeRange.fromStartEnd(130, 200, false),
+            TimeRange.fromStartEnd(1000, TimeRange.END_OF_DAY, true)),
+        mask.ranges(0).toTimeRanges());
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(130, 200, false),
+            TimeRange.fromStartEnd(1000, TimeRange.END_OF_DAY, true)),
+        mask.ranges(61).toTimeRanges());
+  }
+
+  @Test
+  public void intersection() {
+    MinuteBitmask mask =
+        MinuteBitmask.freeTimes(Arrays.asList(TimeRange.fromStartEnd(0, 100, false)));
+    mask.and(MinuteBitmask.freeTimes(Arrays.asList(TimeRange.fromStartEnd(150, 1440, false))));
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(100, 150, false)), mask.ranges(0).toTimeRanges());
+  }
+
+  @Test
+  public void windowStartsCrossWordBoundaries() {
+    // Free from 60 to 200, which spans three words.
+    MinuteBitmask mask = MinuteBitmask.freeTimes(Arrays.asList(
+        TimeRange.fromStartEnd(0, 60, false), TimeRange.fromStartEnd(200, 1440, false)));
+    mask.keepWindowStarts(100);
+
+    // A 100 minute meeting can start anywhere from 60 to 100 (inclusive).
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(60, 100, true)), mask.ranges(0).toTimeRanges());
+    Assert.assertFalse(mask.get(59));
+    Assert.assertFalse(mask.get(101));
+  }
+}
@@ -0,0 +1,133 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class QueryResultCacheTest {
+  private static final Collection<TimeRange> RESULT = Arrays.asList(TimeRange.WHOLE_DAY);
+
+  private AtomicInteger computations;
+  private Supplier<Collection<TimeRange>> compute;
+
+  @Before
+  public void setUp() {
+    computations = new AtomicInteger();
+    compute = () -> {
+      computations.incrementAndGet();
+      return RESULT;
+    };
+  }
+
+  @Test
+  public void attendeeOrderDoesNotMatter() {
+    QueryResultCache cache = new QueryResultCache(8);
+    MeetingRequest one = new MeetingRequest(Arrays.asList("Person A", "Person B"), 30);
+    one.addOptionalAttendee("Person C");
+    one.addOptionalAttendee("Person D");
+    MeetingRequest two = new MeetingRequest(Arrays.asList("Person B", "Person A"), 30);
+    two.addOptionalAttendee("Person D");
+    two.addOptionalAttendee("Person C");
+
+    Assert.assertEquals(RESULT, cache.get(1, one, compute));
+    Assert.assertEquals(RESULT, cache.get(1, two, compute));
+
+    Assert.assertEquals(1, computations.get());
+    Assert.assertEquals(1, cache.hitCount());
+    Assert.assertEquals(1, cache.missCount());
+  }
+
+  @Test
+  public void differentRequestsMiss() {
+    QueryResultCache cache = new QueryResultCache(8);
+    MeetingRequest mandatory = new MeetingRequest(Arrays.asList("Person A"), 30);
+    MeetingRequest optional = new MeetingRequest(Collections.emptyList(), 30);
+    optional.addOptionalAttendee("Person A");
+    MeetingRequest longer = new MeetingRequest(Arrays.asList("Person A"), 60);
+
+    cache.get(1, mandatory, compute);
+    cache.get(1, optional, compute);
+    cache.get(1, longer, compute);
+
+    Assert.assertEquals(3, computations.get());
+    Assert.assertEquals(0, cache.hitCount());
+  }
+
+  @Test
+  public void newVersionInvalidates() {
+    QueryResultCache cache = new QueryResultCache(8);
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Person A"), 30);
+
+    cache.get(1, request, compute);
+    cache.get(2, request, compute);
+    cache.get(2, request, compute);
+
+    Assert.assertEquals(2, computations.get());
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void staleVersionIsNotCached() {
+    QueryResultCache cache = new QueryResultCache(8);
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Person A"), 30);
+
+    cache.get(2, request, compute);
+    cache.get(1, request, compute);
+    cache.get(1, request, compute);
+
+    Assert.assertEquals(3, computations.get());
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void leastRecentlyUsedIsEvicted() {
+    QueryResultCache cache = new QueryResultCache(2);
+    MeetingRequest a = new MeetingRequest(Arrays.asList("Person A"), 30);
+    MeetingRequest b = new MeetingRequest(Arrays.asList("Person B"), 30);
+    MeetingRequest c = new MeetingRequest(Arrays.asList("Person C"), 30);
+
+    cache.get(1, a, compute);
+    cache.get(1, b, compute);
+    // Using A makes B the least recently used.
+    cache.get(1, a, compute);
+    cache.get(1, c, compute);
+    cache.get(1, a, compute);
+
+    Assert.assertEquals(3, computations.get());
+    Assert.assertEquals(1, cache.evictionCount());
+
+    cache.get(1, b, compute);
+    Assert.assertEquals(4, computations.get());
+  }
+
+  @Test
+  public void indexVersionsIncrease() {
+    AttendeeCalendarIndex first = AttendeeCalendarIndex.of();
+    AttendeeCalendarIndex second = AttendeeCalendarIndex.of();
+
+    Assert.assertTrue(second.getVersion() > first.getVersion());
+  }
+}
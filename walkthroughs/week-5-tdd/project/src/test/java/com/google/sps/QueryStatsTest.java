@@ -0,0 +1,66 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class QueryStatsTest {
+  @Test
+  public void latencyBucketsDoubleInWidth() {
+    Assert.assertEquals(0, QueryStats.latencyBucket(TimeUnit.NANOSECONDS.toNanos(999)));
+    Assert.assertEquals(1, QueryStats.latencyBucket(TimeUnit.MICROSECONDS.toNanos(1)));
+    Assert.assertEquals(2, QueryStats.latencyBucket(TimeUnit.MICROSECONDS.toNanos(3)));
+    Assert.assertEquals(3, QueryStats.latencyBucket(TimeUnit.MICROSECONDS.toNanos(4)));
+    Assert.assertEquals(23, QueryStats.latencyBucket(TimeUnit.HOURS.toNanos(1)));
+
+    // Every latency falls below its bucket's limit and at or above the one before.
+    long micros = 1000;
+    int bucket = QueryStats.latencyBucket(TimeUnit.MICROSECONDS.toNanos(micros));
+    Assert.assertTrue(micros < QueryStats.getBucketLimitMicros(bucket));
+    Assert.assertTrue(micros >= QueryStats.getBucketLimitMicros(bucket - 1));
+  }
+
+  @Test
+  public void exhaustiveQueryIsRecorded() {
+    QueryStats stats = QueryStats.global();
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(0, 60), Arrays.asList("Person A")),
+        new Event("Event 2", TimeRange.fromStartDuration(120, 60), Arrays.asList("Person B")));
+    MeetingRequest request = new MeetingRequest(Arrays.asList("Person A"), 30);
+    request.addOptionalAttendee("Person B");
+    request.addOptionalAttendee("Person C");
+
+    long solves = stats.getPhaseCount(QueryStats.Phase.SOLVE);
+    long subsets = stats.get(QueryStats.Counter.SUBSETS_EXPLORED);
+    long builds = stats.getPhaseCount(QueryStats.Phase.INDEX_BUILD);
+    long latencies = Arrays.stream(stats.getLatencyHistogram()).sum();
+
+    new FindMeetingQuery().query(events, request, FindMeetingQuery.Mode.EXHAUSTIVE);
+
+    Assert.assertEquals(solves + 1, stats.getPhaseCount(QueryStats.Phase.SOLVE));
+    // {B}, {B, C} and {C}.
+    Assert.assertEquals(subsets + 3, stats.get(QueryStats.Counter.SUBSETS_EXPLORED));
+    Assert.assertEquals(builds + 1, stats.getPhaseCount(QueryStats.Phase.INDEX_BUILD));
+    Assert.assertEquals(latencies + 1, Arrays.stream(stats.getLatencyHistogram()).sum());
+  }
+}
@@ -0,0 +1,126 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class RecurringEventTest {
+  private static final String PERSON_A = "Person A";
+
+  private static final int DAY = 24 * 60;
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+
+  // Day zero is a Thursday.
+  private static final int FIRST_MONDAY = 4;
+
+  private static RecurringEvent standup() {
+    return RecurringEvent.daily(
+        "Standup", TimeRange.fromStartDuration(TIME_0900AM, 15), Arrays.asList(PERSON_A));
+  }
+
+  private static List<Integer> starts(List<Event> events) {
+    List<Integer> starts = new ArrayList<>();
+    for (Event event : events) {
+      starts.add(event.getWhen().start());
+    }
+    return starts;
+  }
+
+  @Test
+  public void dailyOnlyExpandsTheWindow() {
+    List<Event> events = standup().expand(TimeRange.fromStartDuration(300 * DAY, 3 * DAY));
+
+    Assert.assertEquals(Arrays.asList(300 * DAY + TIME_0900AM, 301 * DAY + TIME_0900AM,
+        302 * DAY + TIME_0900AM), starts(events));
+    Assert.assertEquals("Standup", events.get(0).getTitle());
+    Assert.assertEquals(15, events.get(0).getWhen().duration());
+    Assert.assertEquals(Collections.singleton(PERSON_A), events.get(0).getAttendees());
+  }
+
+  @Test
+  public void nothingBeforeTheFirstOccurrence() {
+    RecurringEvent series = RecurringEvent.daily("Standup",
+        TimeRange.fromStartDuration(10 * DAY + TIME_0900AM, 15), Arrays.asList(PERSON_A));
+
+    Assert.assertTrue(series.expand(TimeRange.fromStartDuration(0, 10 * DAY)).isEmpty());
+    Assert.assertEquals(Arrays.asList(10 * DAY + TIME_0900AM),
+        starts(series.expand(TimeRange.fromStartDuration(0, 11 * DAY))));
+  }
+
+  @Test
+  public void everyOtherDay() {
+    List<Event> events = standup().every(2).expand(TimeRange.fromStartDuration(0, 5 * DAY));
+
+    Assert.assertEquals(
+        Arrays.asList(TIME_0900AM, 2 * DAY + TIME_0900AM, 4 * DAY + TIME_0900AM), starts(events));
+  }
+
+  @Test
+  public void weeklyOnChosenDays() {
+    RecurringEvent series = RecurringEvent.weekly("Sync",
+        TimeRange.fromStartDuration(FIRST_MONDAY * DAY + TIME_0900AM, 30), Arrays.asList(PERSON_A),
+        EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY));
+
+    List<Event> events = series.expand(TimeRange.fromStartDuration(0, 14 * DAY));
+
+    Assert.assertEquals(Arrays.asList(FIRST_MONDAY * DAY + TIME_0900AM,
+        (FIRST_MONDAY + 2) * DAY + TIME_0900AM, (FIRST_MONDAY + 7) * DAY + TIME_0900AM,
+        (FIRST_MONDAY + 9) * DAY + TIME_0900AM), starts(events));
+  }
+
+  @Test
+  public void everyOtherWeek() {
+    RecurringEvent series = RecurringEvent.weekly("Sync",
+        TimeRange.fromStartDuration(FIRST_MONDAY * DAY + TIME_0900AM, 30), Arrays.asList(PERSON_A),
+        EnumSet.noneOf(DayOfWeek.class)).every(2);
+
+    List<Event> events = series.expand(TimeRange.fromStartDuration(0, 28 * DAY));
+
+    Assert.assertEquals(Arrays.asList(FIRST_MONDAY * DAY + TIME_0900AM,
+        (FIRST_MONDAY + 14) * DAY + TIME_0900AM), starts(events));
+  }
+
+  @Test
+  public void exceptionsAndEndAreSkipped() {
+    RecurringEvent series = standup().except(DAY + TIME_0900AM).until(3 * DAY);
+
+    List<Event> events = series.expand(TimeRange.fromStartDuration(0, 10 * DAY));
+
+    Assert.assertEquals(Arrays.asList(TIME_0900AM, 2 * DAY + TIME_0900AM), starts(events));
+  }
+
+  @Test
+  public void occurrencesRunningPastMidnightOverlapTheNextDay() {
+    RecurringEvent series = RecurringEvent.daily("Night shift",
+        TimeRange.fromStartDuration(TimeRange.getTimeInMinutes(22, 0), 4 * 60),
+        Arrays.asList(PERSON_A));
+
+    List<Event> events = series.expand(TimeRange.fromStartDuration(5 * DAY, 60));
+
+    Assert.assertEquals(
+        Arrays.asList(4 * DAY + TimeRange.getTimeInMinutes(22, 0)), starts(events));
+  }
+}
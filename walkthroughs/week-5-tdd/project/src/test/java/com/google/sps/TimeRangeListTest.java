@@ -0,0 +1,105 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class TimeRangeListTest {
+  @Test
+  public void intersect() {
+    // One     : |-----|     |-----------|
+    // Two     :    |-----------|   |--|
+    // Result  :    |--|     |--|   |--|
+    TimeRangeList one = TimeRangeList.of(Arrays.asList(
+        TimeRange.fromStartEnd(0, 100, false), TimeRange.fromStartEnd(200, 500, false)));
+    TimeRangeList two = TimeRangeList.of(Arrays.asList(
+        TimeRange.fromStartEnd(50, 300, false), TimeRange.fromStartEnd(400, 450, false)));
+
+    one.intersect(two);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(50, 100, false),
+            TimeRange.fromStartEnd(200, 300, false), TimeRange.fromStartEnd(400, 450, false)),
+        one.toTimeRanges());
+  }
+
+  @Test
+  public void intersectCanGrowTheList() {
+    // One long range split by many short ones gives more ranges than the list started with.
+    TimeRangeList one = TimeRangeList.wholeDay();
+    TimeRangeList two = new TimeRangeList(1);
+    for (int start = 0; start < 1000; start += 100) {
+      two.add(start, start + 50);
+    }
+
+    one.intersect(two);
+
+    Assert.assertEquals(10, one.size());
+    Assert.assertEquals(900, one.start(9));
+    Assert.assertEquals(950, one.end(9));
+  }
+
+  @Test
+  public void complement() {
+    TimeRangeList busy = TimeRangeList.of(Arrays.asList(
+        TimeRange.fromStartEnd(0, 100, false), TimeRange.fromStartEnd(200, 500, false)));
+
+    busy.complement();
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(0, 0, false), TimeRange.fromStartEnd(100, 200, false),
+            TimeRange.fromStartEnd(500, TimeRange.END_OF_DAY, true)),
+        busy.toTimeRanges());
+  }
+
+  @Test
+  public void removeShorterThan() {
+    TimeRangeList ranges = TimeRangeList.of(Arrays.asList(TimeRange.fromStartEnd(0, 10, false),
+        TimeRange.fromStartEnd(20, 80, false), TimeRange.fromStartEnd(90, 95, false)));
+
+    ranges.removeShorterThan(30);
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(20, 80, false)), ranges.toTimeRanges());
+  }
+
+  @Test
+  public void gapsWithinWindow() {
+    TimeRangeList busy = TimeRangeList.of(Arrays.asList(TimeRange.fromStartEnd(0, 100, false),
+        TimeRange.fromStartEnd(200, 500, false), TimeRange.fromStartEnd(2000, 3000, false)));
+
+    TimeRangeList gaps = busy.gaps(50, 2500);
+
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(100, 200, false),
+        TimeRange.fromStartEnd(500, 2000, false)), gaps.toTimeRanges());
+    Assert.assertEquals(3, busy.size());
+  }
+
+  @Test
+  public void firstEndingAfter() {
+    TimeRangeList ranges = TimeRangeList.of(Arrays.asList(
+        TimeRange.fromStartEnd(0, 100, false), TimeRange.fromStartEnd(200, 500, false)));
+
+    Assert.assertEquals(0, ranges.firstEndingAfter(99));
+    Assert.assertEquals(1, ranges.firstEndingAfter(100));
+    Assert.assertEquals(2, ranges.firstEndingAfter(500));
+  }
+}
@@ -0,0 +1,242 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * One request and its response for servlet tests. Both are proxies of the servlet interfaces that
+ * only implement the methods the servlets call, and throw for anything else.
+ */
+final class FakeExchange {
+  final Map<String, String> requestHeaders = new ConcurrentHashMap<>();
+  final Map<String, String> parameters = new ConcurrentHashMap<>();
+  volatile String requestBody = "";
+  // If set, whoever asks for the response's writer waits until this is counted down.
+  volatile CountDownLatch writerGate;
+
+  final HttpServletRequest request;
+  final HttpServletResponse response;
+
+  private final Map<String, String> responseHeaders = new ConcurrentHashMap<>();
+  private final StringWriter writer = new StringWriter();
+  private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  private final List<AsyncListener> listeners = new CopyOnWriteArrayList<>();
+  private final CountDownLatch completed = new CountDownLatch(1);
+  private volatile int status = HttpServletResponse.SC_OK;
+  private volatile AsyncContext async;
+
+  FakeExchange() {
+    request = proxy(HttpServletRequest.class, this::onRequest);
+    response = proxy(HttpServletResponse.class, this::onResponse);
+  }
+
+  /** Returns a config whose context drops everything logged to it. */
+  static ServletConfig config() {
+    ServletContext context = proxy(ServletContext.class, (method, args) -> {
+      if (method.getName().equals("log")) {
+        return null;
+      }
+      throw new UnsupportedOperationException(method.getName());
+    });
+    return proxy(ServletConfig.class, (method, args) -> {
+      switch (method.getName()) {
+        case "getServletContext":
+          return context;
+        case "getServletName":
+          return "test";
+        case "getInitParameter":
+          return null;
+        default:
+          throw new UnsupportedOperationException(method.getName());
+      }
+    });
+  }
+
+  int status() {
+    return status;
+  }
+
+  String responseHeader(String name) {
+    return responseHeaders.get(name);
+  }
+
+  /** Returns what was written to the response, through its writer or its output stream. */
+  String responseBody() {
+    synchronized (bytes) {
+      return writer.toString() + new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  byte[] responseBytes() {
+    synchronized (bytes) {
+      return bytes.toByteArray();
+    }
+  }
+
+  /** Returns whether an async response has been completed. */
+  boolean isComplete() {
+    return completed.getCount() == 0;
+  }
+
+  boolean awaitCompletion() throws InterruptedException {
+    return completed.await(5, TimeUnit.SECONDS);
+  }
+
+  /** Tells the servlet that its async request timed out, the way the container would. */
+  void timeOut() throws IOException {
+    for (AsyncListener listener : listeners) {
+      listener.onTimeout(new AsyncEvent(async));
+    }
+  }
+
+  private Object onRequest(Method method, Object[] args) {
+    switch (method.getName()) {
+      case "getHeader":
+        return requestHeaders.get(args[0]);
+      case "getParameter":
+        return parameters.get(args[0]);
+      case "getReader":
+        return new BufferedReader(new StringReader(requestBody));
+      case "startAsync":
+        async = proxy(AsyncContext.class, this::onAsync);
+        return async;
+      case "isAsyncStarted":
+        return async != null;
+      default:
+        throw new UnsupportedOperationException(method.getName());
+    }
+  }
+
+  private Object onResponse(Method method, Object[] args) throws IOException {
+    switch (method.getName()) {
+      case "setHeader":
+        responseHeaders.put((String) args[0], (String) args[1]);
+        return null;
+      case "getHeader":
+        return responseHeaders.get(args[0]);
+      case "setStatus":
+      case "sendError":
+        status = (Integer) args[0];
+        return null;
+      case "setContentType":
+      case "setCharacterEncoding":
+      case "setContentLength":
+        return null;
+      case "getWriter":
+        awaitWriterGate();
+        return new PrintWriter(writer, true);
+      case "getOutputStream":
+        return new ServletOutputStream() {
+          @Override
+          public void write(int b) {
+            synchronized (bytes) {
+              bytes.write(b);
+            }
+          }
+
+          @Override
+          public boolean isReady() {
+            return true;
+          }
+
+          @Override
+          public void setWriteListener(WriteListener listener) {}
+        };
+      default:
+        throw new UnsupportedOperationException(method.getName());
+    }
+  }
+
+  private Object onAsync(Method method, Object[] args) {
+    switch (method.getName()) {
+      case "setTimeout":
+        return null;
+      case "addListener":
+        listeners.add((AsyncListener) args[0]);
+        return null;
+      case "getRequest":
+        return request;
+      case "getResponse":
+        return response;
+      case "complete":
+        completed.countDown();
+        return null;
+      default:
+        throw new UnsupportedOperationException(method.getName());
+    }
+  }
+
+  private void awaitWriterGate() throws InterruptedIOException {
+    CountDownLatch gate = writerGate;
+    if (gate == null) {
+      return;
+    }
+    try {
+      gate.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to write");
+    }
+  }
+
+  // Handles the calls to one proxied interface.
+  private interface Handler {
+    Object handle(Method method, Object[] args) throws IOException;
+  }
+
+  private static <T> T proxy(Class<T> type, Handler handler) {
+    InvocationHandler invocationHandler = (proxy, method, args) -> {
+      if (method.getDeclaringClass() == Object.class) {
+        switch (method.getName()) {
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          default:
+            return type.getSimpleName();
+        }
+      }
+      return handler.handle(method, args);
+    };
+    return type.cast(
+        Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, invocationHandler));
+  }
+}
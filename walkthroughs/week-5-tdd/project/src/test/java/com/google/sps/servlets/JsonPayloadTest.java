@@ -0,0 +1,201 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class JsonPayloadTest {
+  // Repetitive enough that gzip always makes it smaller.
+  private static final JsonPayload PAYLOAD =
+      JsonPayload.of(Collections.nCopies(100, "Meeting with Person A"));
+  private static final String JSON = "[" + String.join(",",
+      Collections.nCopies(100, "\"Meeting with Person A\"")) + "]";
+
+  @Test
+  public void noAcceptEncodingSendsPlainBody() throws Exception {
+    FakeExchange exchange = send(null, null);
+
+    assertPlain(exchange);
+  }
+
+  @Test
+  public void acceptedGzipSendsGzippedBody() throws Exception {
+    FakeExchange exchange = send("deflate, gzip", null);
+
+    assertGzipped(exchange);
+  }
+
+  @Test
+  public void gzipWithZeroQualityIsRefused() throws Exception {
+    FakeExchange exchange = send("gzip;q=0", null);
+
+    assertPlain(exchange);
+  }
+
+  @Test
+  public void gzipWithQualityIsAccepted() throws Exception {
+    FakeExchange exchange = send("gzip;q=0.5", null);
+
+    assertGzipped(exchange);
+  }
+
+  @Test
+  public void refusedIdentityStillGetsGzip() throws Exception {
+    FakeExchange exchange = send("gzip, identity;q=0", null);
+
+    assertGzipped(exchange);
+  }
+
+  @Test
+  public void refusedIdentityWithoutGzipFallsBackToPlainBody() throws Exception {
+    // There is nothing else to send, so the refusal is ignored rather than failing the request.
+    FakeExchange exchange = send("identity;q=0", null);
+
+    assertPlain(exchange);
+  }
+
+  @Test
+  public void wildcardAcceptsGzip() throws Exception {
+    FakeExchange exchange = send("*", null);
+
+    assertGzipped(exchange);
+  }
+
+  @Test
+  public void wildcardWithZeroQualityRefusesGzip() throws Exception {
+    FakeExchange exchange = send("*;q=0", null);
+
+    assertPlain(exchange);
+  }
+
+  @Test
+  public void listedGzipOverridesWildcard() throws Exception {
+    FakeExchange exchange = send("gzip, *;q=0", null);
+
+    assertGzipped(exchange);
+  }
+
+  @Test
+  public void encodingsHaveDifferentEtags() throws Exception {
+    String plainEtag = send(null, null).responseHeader("ETag");
+    String gzippedEtag = send("gzip", null).responseHeader("ETag");
+
+    Assert.assertNotEquals(plainEtag, gzippedEtag);
+    Assert.assertTrue(plainEtag, plainEtag.startsWith("\"") && plainEtag.endsWith("\""));
+  }
+
+  @Test
+  public void matchingEtagIsNotModified() throws Exception {
+    String etag = send(null, null).responseHeader("ETag");
+
+    FakeExchange exchange = send(null, etag);
+
+    assertNotModified(exchange);
+  }
+
+  @Test
+  public void weakEtagMatchesStrongOne() throws Exception {
+    String etag = send("gzip", null).responseHeader("ETag");
+
+    FakeExchange exchange = send("gzip", "W/" + etag);
+
+    assertNotModified(exchange);
+  }
+
+  @Test
+  public void anyEtagInListMatches() throws Exception {
+    String etag = send(null, null).responseHeader("ETag");
+
+    FakeExchange exchange = send(null, "\"stale\", " + etag);
+
+    assertNotModified(exchange);
+  }
+
+  @Test
+  public void wildcardIfNoneMatchIsNotModified() throws Exception {
+    FakeExchange exchange = send(null, "*");
+
+    assertNotModified(exchange);
+  }
+
+  @Test
+  public void differentEtagSendsBody() throws Exception {
+    FakeExchange exchange = send(null, "\"stale\"");
+
+    assertPlain(exchange);
+  }
+
+  @Test
+  public void etagOfOtherEncodingSendsBody() throws Exception {
+    String plainEtag = send(null, null).responseHeader("ETag");
+
+    FakeExchange exchange = send("gzip", plainEtag);
+
+    assertGzipped(exchange);
+  }
+
+  private static FakeExchange send(String acceptEncoding, String ifNoneMatch) throws IOException {
+    FakeExchange exchange = new FakeExchange();
+    if (acceptEncoding != null) {
+      exchange.requestHeaders.put("Accept-Encoding", acceptEncoding);
+    }
+    if (ifNoneMatch != null) {
+      exchange.requestHeaders.put("If-None-Match", ifNoneMatch);
+    }
+    PAYLOAD.writeTo(exchange.request, exchange.response);
+    return exchange;
+  }
+
+  private static void assertPlain(FakeExchange exchange) {
+    Assert.assertEquals(HttpServletResponse.SC_OK, exchange.status());
+    Assert.assertNull(exchange.responseHeader("Content-Encoding"));
+    Assert.assertEquals(JSON, exchange.responseBody());
+  }
+
+  private static void assertGzipped(FakeExchange exchange) throws IOException {
+    Assert.assertEquals(HttpServletResponse.SC_OK, exchange.status());
+    Assert.assertEquals("gzip", exchange.responseHeader("Content-Encoding"));
+    Assert.assertEquals(JSON, gunzip(exchange.responseBytes()));
+  }
+
+  private static void assertNotModified(FakeExchange exchange) {
+    Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, exchange.status());
+    Assert.assertEquals(0, exchange.responseBytes().length);
+  }
+
+  private static String gunzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      byte[] buffer = new byte[4096];
+      for (int read; (read = in.read(buffer)) > 0; ) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
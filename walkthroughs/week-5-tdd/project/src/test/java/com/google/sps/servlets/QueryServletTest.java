@@ -0,0 +1,122 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class QueryServletTest {
+  private static final String REQUEST = "{\"attendees\":[\"Person A\"],\"duration\":30}";
+  // Far more than the solver pool and its queue hold on any machine.
+  private static final int MAX_REQUESTS = 10_000;
+
+  private final QueryServlet servlet = new QueryServlet();
+  // Holds every accepted query while it writes its answer, so the pool stays busy.
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws Exception {
+    servlet.init(FakeExchange.config());
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    servlet.destroy();
+  }
+
+  @Test
+  public void answersQuery() throws Exception {
+    FakeExchange exchange = new FakeExchange();
+    exchange.requestBody = REQUEST;
+
+    servlet.doPost(exchange.request, exchange.response);
+
+    Assert.assertTrue(exchange.awaitCompletion());
+    Assert.assertEquals(HttpServletResponse.SC_OK, exchange.status());
+    Assert.assertTrue(exchange.responseBody(), exchange.responseBody().startsWith("[{"));
+  }
+
+  @Test
+  public void emptyBodyIsRejected() throws Exception {
+    FakeExchange exchange = new FakeExchange();
+
+    servlet.doPost(exchange.request, exchange.response);
+
+    Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, exchange.status());
+  }
+
+  @Test
+  public void queryBeyondTheQueueIsTurnedAway() throws Exception {
+    List<FakeExchange> accepted = new ArrayList<>();
+    FakeExchange rejected = fillPool(accepted);
+
+    Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, rejected.status());
+    Assert.assertEquals("1", rejected.responseHeader("Retry-After"));
+
+    release.countDown();
+    for (FakeExchange exchange : accepted) {
+      Assert.assertTrue(exchange.awaitCompletion());
+      Assert.assertEquals(HttpServletResponse.SC_OK, exchange.status());
+    }
+  }
+
+  @Test
+  public void queryPastItsTimeoutIsTurnedAway() throws Exception {
+    List<FakeExchange> accepted = new ArrayList<>();
+    fillPool(accepted);
+    // The pool was full when the last accepted query came in, so it is still waiting in the queue.
+    FakeExchange queued = accepted.remove(accepted.size() - 1);
+
+    queued.timeOut();
+
+    Assert.assertTrue(queued.isComplete());
+    Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, queued.status());
+    Assert.assertEquals("1", queued.responseHeader("Retry-After"));
+
+    // The timed out query was cancelled, so it never runs once the pool is free again.
+    release.countDown();
+    for (FakeExchange exchange : accepted) {
+      Assert.assertTrue(exchange.awaitCompletion());
+    }
+    Assert.assertEquals("", queued.responseBody());
+  }
+
+  // Sends queries that are held while they write their answers until one is turned away, which
+  // is returned. The ones accepted before it are added to {@code accepted}.
+  private FakeExchange fillPool(List<FakeExchange> accepted) throws Exception {
+    while (accepted.size() < MAX_REQUESTS) {
+      FakeExchange exchange = new FakeExchange();
+      exchange.requestBody = REQUEST;
+      exchange.writerGate = release;
+      servlet.doPost(exchange.request, exchange.response);
+      if (exchange.isComplete()) {
+        return exchange;
+      }
+      accepted.add(exchange);
+    }
+    throw new AssertionError("No query was turned away");
+  }
+}